@@ -1,11 +1,14 @@
 package com.arlias.quarkus_crudify.configuration;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArliasThreadFactory implements ThreadFactory {
 
     private final ThreadGroup group;
 
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
     public ArliasThreadFactory(long mainThreadId) {
         this.group = new ThreadGroup(String.valueOf(mainThreadId));
     }
@@ -16,6 +19,8 @@ public class ArliasThreadFactory implements ThreadFactory {
 
     @Override
     public Thread newThread(Runnable r) {
-        return new Thread(group, r);
+        Thread thread = new Thread(group, r, group.getName() + "-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
     }
 }
@@ -0,0 +1,62 @@
+package com.arlias.quarkus_crudify.configuration;
+
+import com.arlias.quarkus_crudify.service.CrudifyCounter;
+import com.arlias.quarkus_crudify.service.EntityCache;
+import com.arlias.quarkus_crudify.service.FetchPlan;
+import com.arlias.quarkus_crudify.service.ProjectionCache;
+import com.arlias.quarkus_crudify.service.QueryPlanCache;
+import com.arlias.quarkus_crudify.service.SearchIndex;
+import com.arlias.quarkus_crudify.util.CrudifyFramework;
+import com.arlias.quarkus_crudify.util.JWTGenerator;
+import com.arlias.quarkus_crudify.util.ResponseCache;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Map;
+
+@Readiness
+@ApplicationScoped
+public class CrudifyHealthCheck implements HealthCheck {
+
+    @Inject
+    CrudifyWorkerPool workerPool;
+
+    @Inject
+    CrudifyCounter counter;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @Inject
+    JWTGenerator jwtGenerator;
+
+    @Override
+    public HealthCheckResponse call() {
+        HealthCheckResponseBuilder builder = HealthCheckResponse.named("crudify").up();
+        withData(builder, "worker", workerPool.getStats());
+        withData(builder, "stages", CrudifyFramework.getStageTimings());
+        withData(builder, "count", counter.getStats());
+        withData(builder, "query-plans", QueryPlanCache.getStats());
+        withData(builder, "projections", ProjectionCache.getStats());
+        withData(builder, "fetch-plans", FetchPlan.getStats());
+        withData(builder, "search-index", SearchIndex.getStats());
+        withData(builder, "entity-cache", EntityCache.getStats());
+        withData(builder, "response-cache", responseCache.getStats());
+        withData(builder, "jwt-claims", jwtGenerator.getStats());
+        return builder.build();
+    }
+
+    private static void withData(HealthCheckResponseBuilder builder, String prefix, Map<String, Object> stats) {
+        stats.forEach((k, v) -> {
+            if (v instanceof Number) {
+                builder.withData(prefix + "." + k, ((Number) v).longValue());
+            } else {
+                builder.withData(prefix + "." + k, String.valueOf(v));
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.arlias.quarkus_crudify.configuration;
+
+import com.arlias.quarkus_crudify.enums.WorkerMode;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ThreadContext;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Singleton
+public class CrudifyWorkerPool {
+
+    @ConfigProperty(name = "crudify.worker.mode", defaultValue = "POOLED")
+    WorkerMode mode;
+
+    @ConfigProperty(name = "crudify.worker.max-threads", defaultValue = "64")
+    int maxThreads;
+
+    @ConfigProperty(name = "crudify.worker.queue-size", defaultValue = "1024")
+    int queueSize;
+
+    @ConfigProperty(name = "crudify.worker.keep-alive-seconds", defaultValue = "60")
+    long keepAliveSeconds;
+
+    @Inject
+    ThreadContext threadContext;
+
+    @Getter
+    private WorkerMode activeMode;
+
+    private ExecutorService executor;
+
+    private Semaphore inFlight;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+
+
+    @PostConstruct
+    void init() {
+        activeMode = mode;
+        if (activeMode == WorkerMode.VIRTUAL) {
+            try {
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                inFlight = new Semaphore(maxThreads + queueSize);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not available on this JVM, falling back to {} worker mode", WorkerMode.POOLED);
+                activeMode = WorkerMode.POOLED;
+            }
+        }
+        if (activeMode == WorkerMode.POOLED) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, keepAliveSeconds, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new ArliasThreadFactory("crudify-worker"), new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        log.info("Crudify worker pool started in {} mode (max threads {}, queue size {})", activeMode, maxThreads, queueSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public void execute(Runnable task) {
+        dispatch(threadContext.contextualRunnable(task));
+    }
+
+    public void executeIsolated(Runnable task) {
+        dispatch(() -> {
+            ManagedContext requestContext = Arc.container().requestContext();
+            requestContext.activate();
+            try {
+                task.run();
+            } finally {
+                requestContext.terminate();
+            }
+        });
+    }
+
+    private void dispatch(Runnable contextualTask) {
+        submitted.increment();
+        if (inFlight != null && !inFlight.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Crudify worker pool saturated");
+        }
+        try {
+            executor.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    contextualTask.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                    if (inFlight != null) {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            if (inFlight != null) {
+                inFlight.release();
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", activeMode.name());
+        stats.put("active", active.get());
+        stats.put("queued", executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0);
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.arlias.quarkus_crudify.configuration;
 
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
 import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
+import com.arlias.quarkus_crudify.service.TransactionsEnvs;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -14,9 +16,15 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.PackageVersion;
 import com.fasterxml.jackson.datatype.jsr310.deser.InstantDeserializer;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
+@Slf4j
 public class SerializationPanacheEntityModule extends SimpleModule {
 
     public SerializationPanacheEntityModule() {
@@ -36,9 +44,71 @@ public class SerializationPanacheEntityModule extends SimpleModule {
 
     static class PanacheCustomEntitySerializer extends JsonSerializer<PanacheCustomEntity> {
 
+        private static final Object UNREADABLE = new Object();
+
         @Override
         public void serialize(PanacheCustomEntity panacheCustomEntity, JsonGenerator g, SerializerProvider provider) throws IOException {
-            g.writeObject(panacheCustomEntity.toJson());
+            List<String> resFields = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.RESPONSE_FIELD);
+            List<String> expand = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.EXPAND);
+            writeEntity(panacheCustomEntity, g, provider, resFields, expand, new ArrayList<>());
+        }
+
+        private void writeEntity(PanacheCustomEntity entity, JsonGenerator g, SerializerProvider provider, List<String> resFields, List<String> expand, List<Class<?>> skipClasses) throws IOException {
+            EntityMetadata metadata = EntityMetadata.of(entity.getClass());
+            g.writeStartObject(entity);
+            for (EntityMetadata.PropertyMetadata p : metadata.getProperties()) {
+                if (!p.isAccessible()) {
+                    continue;
+                }
+                switch (p.getKind()) {
+                    case VALUE:
+                        if (resFields == null || resFields.isEmpty() || resFields.contains(p.getName())) {
+                            Object value = read(p, entity);
+                            if (value != UNREADABLE) {
+                                provider.defaultSerializeField(p.getName(), value, g);
+                            }
+                        }
+                        break;
+                    case ENTITY:
+                        if ((resFields == null || !resFields.contains(p.getName())) && metadata.isExpanded(p.getName(), expand) && !skipClasses.contains(p.getGetter().getReturnType())) {
+                            Object value = read(p, entity);
+                            if (value instanceof PanacheCustomEntity) {
+                                g.writeFieldName(p.getName());
+                                skipClasses.add(entity.getClass());
+                                try {
+                                    writeEntity((PanacheCustomEntity) value, g, provider, resFields, expand, skipClasses);
+                                } finally {
+                                    skipClasses.remove(skipClasses.size() - 1);
+                                }
+                            }
+                        }
+                        break;
+                    case COLLECTION:
+                        if ((resFields == null || !resFields.contains(p.getName())) && metadata.isExpanded(p.getName(), expand)) {
+                            Object value = read(p, entity);
+                            if (value instanceof Collection) {
+                                g.writeArrayFieldStart(p.getName());
+                                for (Object o : (Collection<?>) value) {
+                                    if (!skipClasses.contains(o.getClass()) && o.getClass().getSuperclass() != null && o.getClass().getSuperclass().getSimpleName().equals("PanacheCustomEntity")) {
+                                        writeEntity((PanacheCustomEntity) o, g, provider, resFields, expand, new ArrayList<>());
+                                    }
+                                }
+                                g.writeEndArray();
+                            }
+                        }
+                        break;
+                }
+            }
+            g.writeEndObject();
+        }
+
+        private static Object read(EntityMetadata.PropertyMetadata p, PanacheCustomEntity entity) {
+            try {
+                return p.get(entity);
+            } catch (RuntimeException e) {
+                log.warn("Cannot call getter method : {}", p.getGetter().getName(), e);
+                return UNREADABLE;
+            }
         }
     }
 }
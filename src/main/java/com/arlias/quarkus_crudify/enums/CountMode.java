@@ -0,0 +1,25 @@
+package com.arlias.quarkus_crudify.enums;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+
+import java.util.Locale;
+
+public enum CountMode {
+
+    EXACT,
+    ESTIMATE,
+    NONE;
+
+    public static CountMode of(String value) {
+        if (value == null || value.isBlank()) {
+            return EXACT;
+        }
+        for (CountMode mode : values()) {
+            if (mode.name().equals(value.trim().toUpperCase(Locale.ROOT))) {
+                return mode;
+            }
+        }
+        throw CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Unknown count mode {}, expected exact, estimate or none", value);
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.arlias.quarkus_crudify.enums;
+
+public enum WorkerMode {
+
+    POOLED,
+    VIRTUAL
+
+}
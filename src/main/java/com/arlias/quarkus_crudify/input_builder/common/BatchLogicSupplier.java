@@ -0,0 +1,17 @@
+package com.arlias.quarkus_crudify.input_builder.common;
+
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.Collections;
+import java.util.List;
+
+public interface BatchLogicSupplier extends LogicSupplier {
+
+    void supplyAll(RoutingContext ctx, List<?> data);
+
+    @Override
+    default <R> void supply(RoutingContext ctx, R data) {
+        supplyAll(ctx, data instanceof List ? (List<?>) data : Collections.singletonList(data));
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.arlias.quarkus_crudify.model.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+@Slf4j
+public final class EntityCopier {
+
+    public enum Mode {
+        RAW,
+        NULL_AWARE
+    }
+
+    private final String[] names;
+
+    private final EntityMetadata.BeanProperty[] from;
+
+    private final EntityMetadata.BeanProperty[] to;
+
+    EntityCopier(EntityMetadata target, EntityMetadata source) {
+        List<EntityMetadata.BeanProperty> targetProperties = new ArrayList<>();
+        List<EntityMetadata.BeanProperty> sourceProperties = new ArrayList<>();
+        for (EntityMetadata.BeanProperty property : target.getBeanProperties()) {
+            EntityMetadata.BeanProperty sourceProperty = source == target ? property : source.getBeanProperty(property.getName());
+            if (sourceProperty != null) {
+                targetProperties.add(property);
+                sourceProperties.add(sourceProperty);
+            }
+        }
+        this.to = targetProperties.toArray(new EntityMetadata.BeanProperty[0]);
+        this.from = sourceProperties.toArray(new EntityMetadata.BeanProperty[0]);
+        this.names = targetProperties.stream().map(EntityMetadata.BeanProperty::getName).toArray(String[]::new);
+    }
+
+    public void copy(Object target, Object source, Mode mode) {
+        copy(target, source, mode, null);
+    }
+
+    public void copy(Object target, Object source, Mode mode, Set<String> changed) {
+        for (int i = 0; i < to.length; i++) {
+            try {
+                Object value = from[i].get(source);
+                if (mode == Mode.NULL_AWARE && value == null) {
+                    continue;
+                }
+                if (changed != null && Objects.equals(to[i].get(target), value)) {
+                    continue;
+                }
+                to[i].set(target, value);
+                if (changed != null) {
+                    changed.add(names[i]);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Cannot copy property {}", names[i], e);
+            }
+        }
+    }
+
+}
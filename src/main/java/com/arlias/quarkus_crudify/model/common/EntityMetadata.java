@@ -0,0 +1,386 @@
+package com.arlias.quarkus_crudify.model.common;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.util.annotations.BuildInput;
+import com.arlias.quarkus_crudify.util.annotations.CachedResponses;
+import com.arlias.quarkus_crudify.util.annotations.CrudCache;
+import com.arlias.quarkus_crudify.util.annotations.CrudLogic;
+import com.arlias.quarkus_crudify.util.annotations.Expand;
+import com.arlias.quarkus_crudify.util.annotations.IgnoreInput;
+import com.arlias.quarkus_crudify.util.annotations.Searchable;
+import com.arlias.quarkus_crudify.util.annotations.ValueEquality;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.Column;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Getter
+public final class EntityMetadata {
+
+    private static final Map<Class<?>, EntityMetadata> registry = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+
+    //NOTE added PROTECTED modifier fields 'cause for some reason only id is loaded as PUBLIC
+    private final List<FieldMetadata> fields;
+
+    private final List<PropertyMetadata> properties;
+
+    private final Map<String, FieldMetadata> entityFields;
+
+    private final List<String> stringFields;
+
+    private final List<String> dataFields;
+
+    private final List<String> entityBeanFields;
+
+    private final List<CrudLogic> crudLogics;
+
+    private final CrudCache crudCache;
+
+    private final boolean responseCached;
+
+    private final boolean valueEquality;
+
+    private final List<FieldMetadata> searchableFields;
+
+    private final List<String> defaultExpand;
+
+    private final List<FieldMetadata> valueFields;
+
+    private final List<BeanProperty> beanProperties;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, BeanProperty> beanPropertiesByName;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Class<?>, EntityCopier> copiers = new ConcurrentHashMap<>();
+
+
+    private EntityMetadata(Class<?> type) {
+        this.type = type;
+
+        List<Method> getters = Arrays.stream(type.getDeclaredMethods())
+                .filter(m -> m.getName().startsWith("get"))
+                .filter(m -> m.getModifiers() == Modifier.PROTECTED || m.getModifiers() == Modifier.PUBLIC)
+                .collect(Collectors.toList());
+        if (!type.equals(PanacheCustomEntity.class)) {
+            getters.addAll(Arrays.stream(PanacheCustomEntity.class.getDeclaredMethods())
+                    .filter(m -> m.getName().startsWith("get"))
+                    .filter(m -> m.getModifiers() == Modifier.PROTECTED || m.getModifiers() == Modifier.PUBLIC)
+                    .collect(Collectors.toList()));
+        }
+        this.properties = getters.stream()
+                .map(PropertyMetadata::new)
+                .collect(Collectors.toUnmodifiableList());
+
+        List<Field> allFields = Arrays.stream(type.getDeclaredFields())
+                .collect(Collectors.toList());
+        if (!type.equals(PanacheCustomEntity.class)) {
+            allFields.addAll(Arrays.asList(PanacheCustomEntity.class.getDeclaredFields()));
+        }
+        Map<String, FieldMetadata> fieldsByName = new LinkedHashMap<>();
+        allFields.forEach(f -> fieldsByName.put(f.getName(), new FieldMetadata(f)));
+        this.entityFields = Collections.unmodifiableMap(fieldsByName);
+
+        this.fields = allFields.stream()
+                .filter(f -> f.getModifiers() == Modifier.PROTECTED || f.getModifiers() == Modifier.PUBLIC)
+                .map(f -> fieldsByName.get(f.getName()))
+                .collect(Collectors.toUnmodifiableList());
+
+        this.stringFields = fieldsByName.values().stream()
+                .filter(f -> f.getField().getType().getSimpleName().equals(String.class.getSimpleName()))
+                .map(FieldMetadata::getColumn)
+                .collect(Collectors.toUnmodifiableList());
+
+        this.dataFields = fieldsByName.values().stream()
+                .filter(f -> !f.getName().equalsIgnoreCase("id"))
+                .map(FieldMetadata::getColumn)
+                .collect(Collectors.toUnmodifiableList());
+
+        this.searchableFields = fieldsByName.values().stream()
+                .filter(f -> f.getField().isAnnotationPresent(Searchable.class))
+                .filter(f -> f.getField().getType().equals(String.class))
+                .filter(FieldMetadata::isReadable)
+                .collect(Collectors.toUnmodifiableList());
+
+        this.entityBeanFields = fieldsByName.keySet().stream()
+                .filter(name -> !name.equalsIgnoreCase("id"))
+                .collect(Collectors.toUnmodifiableList());
+
+        this.crudLogics = List.of(type.getAnnotationsByType(CrudLogic.class));
+        this.crudCache = type.getAnnotation(CrudCache.class);
+        this.responseCached = type.isAnnotationPresent(CachedResponses.class) && crudLogics.isEmpty();
+        Expand expand = type.getAnnotation(Expand.class);
+        this.defaultExpand = expand == null ? null : List.of(expand.value());
+
+        this.valueEquality = type.isAnnotationPresent(ValueEquality.class);
+        this.valueFields = fields.stream()
+                .filter(f -> !f.getName().startsWith("$"))
+                .filter(FieldMetadata::isReadable)
+                .filter(f -> !PanacheCustomEntity.class.isAssignableFrom(f.getField().getType()))
+                .filter(f -> !Collection.class.isAssignableFrom(f.getField().getType()) && !Map.class.isAssignableFrom(f.getField().getType()))
+                .collect(Collectors.toUnmodifiableList());
+
+        List<BeanProperty> readWriteProperties = new ArrayList<>();
+        try {
+            for (PropertyDescriptor pd : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                if (pd.getReadMethod() != null && pd.getWriteMethod() != null) {
+                    readWriteProperties.add(new BeanProperty(pd));
+                }
+            }
+        } catch (IntrospectionException e) {
+            log.warn("Cannot introspect bean properties of {}", type.getSimpleName(), e);
+        }
+        this.beanProperties = List.copyOf(readWriteProperties);
+        this.beanPropertiesByName = beanProperties.stream()
+                .collect(Collectors.toUnmodifiableMap(BeanProperty::getName, Function.identity()));
+    }
+
+    public boolean isExpanded(String relation, List<String> expand) {
+        if (expand != null) {
+            return expand.contains(relation);
+        }
+        return defaultExpand == null || defaultExpand.contains(relation);
+    }
+
+    public static EntityMetadata of(Class<?> type) {
+        EntityMetadata metadata = registry.get(type);
+        return metadata != null ? metadata : registry.computeIfAbsent(type, EntityMetadata::new);
+    }
+
+    public static EntityMetadata register(Class<? extends PanacheCustomEntity> type) {
+        EntityMetadata metadata = of(type);
+        log.debug("Entity {} metadata: {} properties, {} fields", type.getSimpleName(), metadata.properties.size(), metadata.entityFields.size());
+        return metadata;
+    }
+
+    public FieldMetadata getEntityField(String name) {
+        return entityFields.get(name);
+    }
+
+    public BeanProperty getBeanProperty(String name) {
+        return beanPropertiesByName.get(name);
+    }
+
+    public EntityCopier copierFrom(Class<?> source) {
+        EntityCopier copier = copiers.get(source);
+        return copier != null ? copier : copiers.computeIfAbsent(source, s -> new EntityCopier(this, of(s)));
+    }
+
+
+    public enum PropertyKind {
+        VALUE,
+        ENTITY,
+        COLLECTION
+    }
+
+    @Getter
+    public static final class PropertyMetadata {
+
+        private final Method getter;
+
+        private final String name;
+
+        private final PropertyKind kind;
+
+        private final boolean accessible;
+
+        @Getter(AccessLevel.NONE)
+        private final Function<Object, Object> accessor;
+
+        PropertyMetadata(Method getter) {
+            this.getter = getter;
+            this.name = getter.getName().substring(3, 4).toLowerCase().concat(getter.getName().substring(4));
+            Class<?> returnType = getter.getReturnType();
+            if (returnType.getSimpleName().equals("List") || returnType.getSimpleName().equals("Set")) {
+                this.kind = PropertyKind.COLLECTION;
+            } else if (returnType.getSuperclass() != null && returnType.getSuperclass().getSimpleName().equals("PanacheCustomEntity")) {
+                this.kind = PropertyKind.ENTITY;
+            } else {
+                this.kind = PropertyKind.VALUE;
+            }
+            this.accessible = getter.trySetAccessible();
+            this.accessor = accessible ? PropertyAccessors.getter(getter) : null;
+        }
+
+        public Object get(Object target) {
+            return accessor.apply(target);
+        }
+    }
+
+    @Getter
+    public static final class FieldMetadata {
+
+        private final Field field;
+
+        private final String name;
+
+        private final String column;
+
+        private final boolean accessible;
+
+        private final boolean ignoreInputAnnotated;
+
+        private final List<String> ignoreInputWhen;
+
+        private final List<BuildInput> buildInputs;
+
+        private final Function<String, Object> filterConverter;
+
+        @Getter(AccessLevel.NONE)
+        private final Function<Object, Object> inputConverter;
+
+        @Getter(AccessLevel.NONE)
+        private final Function<Object, Object> reader;
+
+        @Getter(AccessLevel.NONE)
+        private final BiConsumer<Object, Object> writer;
+
+        FieldMetadata(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            String columnName = field.isAnnotationPresent(Column.class) ? field.getAnnotation(Column.class).name() : null;
+            this.column = columnName == null || columnName.isBlank() ? field.getName() : columnName;
+            this.accessible = field.trySetAccessible();
+            this.ignoreInputAnnotated = field.isAnnotationPresent(IgnoreInput.class);
+            this.ignoreInputWhen = ignoreInputAnnotated ? List.of(field.getAnnotation(IgnoreInput.class).when()) : List.of();
+            this.buildInputs = List.of(field.getAnnotationsByType(BuildInput.class));
+            this.filterConverter = filterConverterOf(field.getType());
+            this.inputConverter = inputConverterOf(field.getType());
+            this.reader = accessible && !Modifier.isStatic(field.getModifiers()) ? PropertyAccessors.fieldGetter(field) : null;
+            this.writer = accessible ? writerOf(field) : null;
+        }
+
+        public boolean isReadable() {
+            return reader != null;
+        }
+
+        public Object get(Object target) {
+            return reader.apply(target);
+        }
+
+        public boolean isWritable() {
+            return writer != null;
+        }
+
+        public void set(Object target, Object value) {
+            writer.accept(target, value);
+        }
+
+        //NOTE direct field write as input binding always did, setters with side effects are not called
+        private static BiConsumer<Object, Object> writerOf(Field field) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                return null;
+            }
+            return PropertyAccessors.fieldSetter(field);
+        }
+
+        public boolean isInputIgnored(String method) {
+            return ignoreInputAnnotated && (ignoreInputWhen.isEmpty() || ignoreInputWhen.contains(method));
+        }
+
+        public Object toInputValue(Object value) {
+            return value == null ? null : inputConverter.apply(value);
+        }
+
+        //NOTE the Long check is due to an IllegalArgumentException launched on Long casting
+        private static Function<Object, Object> inputConverterOf(Class<?> type) {
+            if (type.equals(Long.class)) {
+                return value -> value instanceof Long ? value : Long.valueOf(String.valueOf(value));
+            } else if (type.isEnum()) {
+                return value -> Enum.valueOf((Class<Enum>) type, String.valueOf(value));
+            }
+            return Function.identity();
+        }
+
+        public Object toFilterValue(String data) {
+            return filterConverter.apply(data);
+        }
+
+        private static Function<String, Object> filterConverterOf(Class<?> type) {
+            switch (type.getSimpleName()) {
+                case "Long":
+                case "long":
+                    return Long::parseLong;
+                case "Integer":
+                case "int":
+                    return Integer::parseInt;
+                case "Boolean":
+                case "boolean":
+                    return Boolean::parseBoolean;
+                case "Double":
+                case "double":
+                    return Double::parseDouble;
+                case "Float":
+                case "float":
+                    return Float::parseFloat;
+                case "BigDecimal":
+                    return BigDecimal::new;
+                case "UUID":
+                    return UUID::fromString;
+                case "LocalDate":
+                    return LocalDate::parse;
+                case "LocalDateTime":
+                    return LocalDateTime::parse;
+                case "Instant":
+                    return Instant::parse;
+                case "Date":
+                    return data -> data.chars().allMatch(Character::isDigit) ? new Date(Long.parseLong(data)) : Date.from(Instant.parse(data));
+                default:
+                    if (type.isEnum()) {
+                        return data -> Enum.valueOf((Class<Enum>) type, data);
+                    }
+                    return data -> data;
+            }
+        }
+    }
+
+    @Getter
+    public static final class BeanProperty {
+
+        private final String name;
+
+        @Getter(AccessLevel.NONE)
+        private final Function<Object, Object> reader;
+
+        @Getter(AccessLevel.NONE)
+        private final BiConsumer<Object, Object> writer;
+
+        BeanProperty(PropertyDescriptor descriptor) {
+            this.name = descriptor.getName();
+            this.reader = PropertyAccessors.getter(descriptor.getReadMethod());
+            this.writer = PropertyAccessors.setter(descriptor.getWriteMethod());
+        }
+
+        public Object get(Object target) {
+            return reader.apply(target);
+        }
+
+        public void set(Object target, Object value) {
+            writer.accept(target, value);
+        }
+    }
+
+    public static CustomException unknownField(Class<?> type, String name) {
+        return CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Entity {} has no field {}", type.getSimpleName(), name);
+    }
+
+}
@@ -2,29 +2,27 @@ package com.arlias.quarkus_crudify.model.common;
 
 import com.arlias.quarkus_crudify.exception.CustomException;
 import com.arlias.quarkus_crudify.input_builder.BooleanConstantFalseBuilder;
+import com.arlias.quarkus_crudify.service.EntityVersions;
 import com.arlias.quarkus_crudify.service.TransactionsEnvs;
-import com.arlias.quarkus_crudify.util.NullAwareBeanUtilsBean;
-import com.arlias.quarkus_crudify.util.NullFillerBeanUtilsBean;
 import com.arlias.quarkus_crudify.util.annotations.BuildInput;
 import com.arlias.quarkus_crudify.util.annotations.IgnoreInput;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import io.quarkus.hibernate.orm.panache.runtime.JpaOperations;
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.beanutils.BeanUtilsBean;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxyHelper;
 
 import javax.enterprise.inject.spi.CDI;
 import javax.persistence.*;
 import javax.transaction.SystemException;
 import javax.transaction.UserTransaction;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
+@Slf4j
 @MappedSuperclass
 public class PanacheCustomEntity extends PanacheEntityBase {
 
@@ -42,31 +40,12 @@ public class PanacheCustomEntity extends PanacheEntityBase {
     @IgnoreInput(when = "PUT")
     public boolean deleted;
 
-    @Transient
-    private final List<Field> fields;
-
-    @Transient
-    private final List<Method> getters;
-
-
-    //NOTE added PROTECTED modifier fields 'cause for some reason only id is loaded as PUBLIC
     public PanacheCustomEntity() {
         super();
-        fields = Arrays.stream(this.getClass().getDeclaredFields())
-                .filter(f -> f.getModifiers() == Modifier.PROTECTED || f.getModifiers() == Modifier.PUBLIC)
-                .collect(Collectors.toList());
-        fields.addAll(Arrays.stream(PanacheCustomEntity.class.getDeclaredFields())
-                .filter(f -> f.getModifiers() == Modifier.PROTECTED || f.getModifiers() == Modifier.PUBLIC)
-                .collect(Collectors.toList()));
+    }
 
-        getters = Arrays.stream(this.getClass().getDeclaredMethods())
-                .filter(m -> m.getName().startsWith("get"))
-                .filter(m -> m.getModifiers() == Modifier.PROTECTED || m.getModifiers() == Modifier.PUBLIC)
-                .collect(Collectors.toList());
-        getters.addAll(Arrays.stream(PanacheCustomEntity.class.getDeclaredMethods())
-                .filter(m -> m.getName().startsWith("get"))
-                .filter(m -> m.getModifiers() == Modifier.PROTECTED || m.getModifiers() == Modifier.PUBLIC)
-                .collect(Collectors.toList()));
+    private EntityMetadata metadata() {
+        return EntityMetadata.of(this.getClass());
     }
 
     public String getMetaType() {
@@ -74,46 +53,32 @@ public class PanacheCustomEntity extends PanacheEntityBase {
     }
 
     public void rawCopy(PanacheCustomEntity insert) {
-
-        BeanUtilsBean rawCopy = new BeanUtilsBean();
-        try {
-            rawCopy.copyProperties(this, insert);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
-
+        metadata().copierFrom(insert.getClass()).copy(this, insert, EntityCopier.Mode.RAW);
     }
 
     public void copy(PanacheCustomEntity insert) {
-
-        BeanUtilsBean notNull = new NullAwareBeanUtilsBean();
-        try {
-            notNull.copyProperties(this, insert);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
-
+        metadata().copierFrom(insert.getClass()).copy(this, insert, EntityCopier.Mode.NULL_AWARE);
     }
 
+    //NOTE kept a no-op: the filler it was built on skipped every property of a non-null target
     public void fill(PanacheCustomEntity insert) {
+    }
 
-        BeanUtilsBean notNull = new NullFillerBeanUtilsBean();
-        try {
-            notNull.copyProperties(this, insert);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
-
+    public Set<String> copyChanges(PanacheCustomEntity insert) {
+        Set<String> changed = new LinkedHashSet<>();
+        metadata().copierFrom(insert.getClass()).copy(this, insert, EntityCopier.Mode.NULL_AWARE, changed);
+        return changed;
     }
 
     public void merge() {
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         try {
             transaction.begin();
             jpaContext.persist(this);
             jpaContext.flush(this);
             transaction.commit();
+            EntityVersions.bump(getClass());
         } catch (Exception e) {
             e.printStackTrace();
             // do something on Tx failure
@@ -126,31 +91,49 @@ public class PanacheCustomEntity extends PanacheEntityBase {
         }
     }
 
+    //NOTE the other side may be an uninitialized proxy, its id is read through the getter
     @Override
     public boolean equals(Object obj) {
-        return this.getClass().equals(obj.getClass()) && this.hashCode() == obj.hashCode();
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PanacheCustomEntity)
+                || HibernateProxyHelper.getClassWithoutInitializingProxy(this) != HibernateProxyHelper.getClassWithoutInitializingProxy(obj)) {
+            return false;
+        }
+        EntityMetadata metadata = metadata();
+        if (metadata.isValueEquality()) {
+            return valueEquals(metadata, (PanacheCustomEntity) Hibernate.unproxy(obj));
+        }
+        return id != null && id.equals(((PanacheCustomEntity) obj).getId());
     }
 
     @Override
     public int hashCode() {
+        EntityMetadata metadata = metadata();
+        if (metadata.isValueEquality()) {
+            return valueHashCode(metadata);
+        }
+        return id != null ? Long.hashCode(id) : System.identityHashCode(this);
+    }
 
-        List<Object> fieldsData = fields.parallelStream()
-                .filter(f -> !f.getName().startsWith("$"))
-                .map(f -> {
-                    try {
-                        if (f.trySetAccessible()) {
-                            return f.get(this);
-                        }
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                    return null;
-                }).filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        fieldsData.add(id);
+    private boolean valueEquals(EntityMetadata metadata, PanacheCustomEntity other) {
+        List<EntityMetadata.FieldMetadata> fields = metadata.getValueFields();
+        for (int i = 0; i < fields.size(); i++) {
+            if (!Objects.equals(fields.get(i).get(this), fields.get(i).get(other))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return Objects.hash(fieldsData);
+    private int valueHashCode(EntityMetadata metadata) {
+        List<EntityMetadata.FieldMetadata> fields = metadata.getValueFields();
+        int hash = 1;
+        for (int i = 0; i < fields.size(); i++) {
+            hash = 31 * hash + Objects.hashCode(fields.get(i).get(this));
+        }
+        return hash;
     }
 
 //    @Override
@@ -179,11 +162,6 @@ public class PanacheCustomEntity extends PanacheEntityBase {
 //    }
 
 
-    private String methodToFieldName(Method m) {
-        return m.getName().substring(3, 4).toLowerCase().concat(m.getName().substring(4));
-    }
-
-
     public final Map<String, Object> toJson(String... skipFields) {
         Map<String, Object> res = null;
         try {
@@ -198,72 +176,61 @@ public class PanacheCustomEntity extends PanacheEntityBase {
     @SafeVarargs
     public final Map<String, Object> toJsonInner(String[] skipFieldsName, Class<? extends PanacheCustomEntity>... skipFields) throws ExecutionException, InterruptedException {
 
-        List<String> resFields = TransactionsEnvs.pullProp(TransactionsEnvs.RESPONSE_FIELD);
+        List<String> resFields = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.RESPONSE_FIELD);
+        List<String> expand = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.EXPAND);
         Map<String, Object> res = new HashMap<>();
 
-        getters.stream()
-                .filter(m -> resFields == null || resFields.isEmpty() || resFields.contains(methodToFieldName(m)))
-                .filter(m -> skipFieldsName == null || skipFieldsName.length == 0 || !Arrays.asList(skipFieldsName).contains(methodToFieldName(m)))
-                .filter(m -> !m.getReturnType().getSimpleName().equals("List") && !m.getReturnType().getSimpleName().equals("Set") && (m.getReturnType().getSuperclass() == null || !m.getReturnType().getSuperclass().getSimpleName().equals("PanacheCustomEntity")))
-                .forEach(m -> {
-                    try {
-                        if (m.trySetAccessible()) {
-                            res.put(methodToFieldName(m), m.invoke(this));
+        List<String> skipFieldsNames = skipFieldsName == null ? List.of() : Arrays.asList(skipFieldsName);
+        List<Class<? extends PanacheCustomEntity>> skipFieldsClasses = Arrays.asList(skipFields);
+
+        for (EntityMetadata.PropertyMetadata p : metadata().getProperties()) {
+            if (skipFieldsNames.contains(p.getName()) || !p.isAccessible()) {
+                continue;
+            }
+            switch (p.getKind()) {
+                case VALUE:
+                    if (resFields == null || resFields.isEmpty() || resFields.contains(p.getName())) {
+                        try {
+                            res.put(p.getName(), p.get(this));
+                        } catch (RuntimeException e) {
+                            log.warn("Cannot call getter method : {}", p.getGetter().getName(), e);
                         }
-                    } catch (IllegalAccessException | InvocationTargetException e) {
-                        System.out.println("Cannot call getter method : " + m.getName());
-                        e.printStackTrace();
                     }
-
-                });
-
-        getters.stream()
-                .filter(m -> resFields == null || !resFields.contains(methodToFieldName(m)))
-                .filter(m -> skipFieldsName == null || skipFieldsName.length == 0 || !Arrays.asList(skipFieldsName).contains(methodToFieldName(m)))
-                .filter(m -> m.getReturnType().getSuperclass() != null && m.getReturnType().getSuperclass().getSimpleName().equals("PanacheCustomEntity"))
-                .forEach(m -> {
-                    try {
-                        if (m.trySetAccessible() && !Arrays.asList(skipFields).contains(m.getReturnType())) {
-                            Object o = m.invoke(this);
+                    break;
+                case ENTITY:
+                    if ((resFields == null || !resFields.contains(p.getName())) && metadata().isExpanded(p.getName(), expand) && !skipFieldsClasses.contains(p.getGetter().getReturnType())) {
+                        try {
+                            Object o = p.get(this);
                             if (o != null) {
-                                List<Class<? extends PanacheCustomEntity>> runtimeSkipFields = new ArrayList<>(Arrays.asList(skipFields));
+                                List<Class<? extends PanacheCustomEntity>> runtimeSkipFields = new ArrayList<>(skipFieldsClasses);
                                 runtimeSkipFields.add(this.getClass());
-                                res.put(methodToFieldName(m), ((PanacheCustomEntity) o).toJsonInner(skipFieldsName, runtimeSkipFields.toArray(new Class[]{})) );
+                                res.put(p.getName(), ((PanacheCustomEntity) o).toJsonInner(skipFieldsName, runtimeSkipFields.toArray(new Class[]{})));
                             }
+                        } catch (RuntimeException e) {
+                            log.warn("Cannot call getter method : {}", p.getGetter().getName(), e);
                         }
-                    } catch (IllegalAccessException | InvocationTargetException e) {
-                        System.out.println("Cannot call getter method : " + m.getName());
-                        e.printStackTrace();
-                    } catch (ExecutionException | InterruptedException e) {
-                        throw new RuntimeException(e);
                     }
-                });
-
-
-        getters.stream()
-                .filter(m -> resFields == null || !resFields.contains(methodToFieldName(m)))
-                .filter(m -> skipFieldsName == null || skipFieldsName.length == 0 || !Arrays.asList(skipFieldsName).contains(methodToFieldName(m)))
-                .filter(m -> m.getReturnType().getSimpleName().equals("List") || m.getReturnType().getSimpleName().equals("Set"))
-                .forEach(m -> {
-                    try {
-                        if (m.trySetAccessible()) {
-                            Collection c = (Collection) m.invoke(this);
+                    break;
+                case COLLECTION:
+                    if ((resFields == null || !resFields.contains(p.getName())) && metadata().isExpanded(p.getName(), expand)) {
+                        try {
+                            Collection c = (Collection) p.get(this);
                             if (c != null) {
                                 List<Map<String, Object>> subRes = new ArrayList<>();
                                 for (Object o : c) {
-                                    if (!Arrays.asList(skipFields).contains(o.getClass()) && o.getClass().getSuperclass() != null && o.getClass().getSuperclass().getSimpleName().equals("PanacheCustomEntity")) {
+                                    if (!skipFieldsClasses.contains(o.getClass()) && o.getClass().getSuperclass() != null && o.getClass().getSuperclass().getSimpleName().equals("PanacheCustomEntity")) {
                                         subRes.add(((PanacheCustomEntity) o).toJsonInner(skipFieldsName));
                                     }
                                 }
-                                res.put(methodToFieldName(m), subRes);
+                                res.put(p.getName(), subRes);
                             }
+                        } catch (Exception e) {
+                            log.warn("Cannot call getter method : {}", p.getGetter().getName(), e);
                         }
-                    } catch (Exception e) {
-                        System.out.println("Cannot call getter method : " + m.getName());
-                        e.printStackTrace();
                     }
-
-                });
+                    break;
+            }
+        }
         return res;
 
     }
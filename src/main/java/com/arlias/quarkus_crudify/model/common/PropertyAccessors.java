@@ -0,0 +1,146 @@
+package com.arlias.quarkus_crudify.model.common;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+//NOTE falls back to method handles where lambdas cannot be defined into the entity class loader (e.g. dev mode)
+@Slf4j
+final class PropertyAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private PropertyAccessors() {
+    }
+
+    static Function<Object, Object> getter(Method method) {
+        try {
+            MethodHandles.Lookup lookup = lookupFor(method.getDeclaringClass());
+            MethodHandle handle = lookup.unreflect(method);
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class),
+                        GETTER_TYPE,
+                        handle,
+                        MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+                return (Function<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("Cannot spin getter lambda for {}, using method handle", method, e);
+                return getter(handle);
+            }
+        } catch (IllegalAccessException e) {
+            log.debug("Cannot look up {}, using reflection", method, e);
+            return target -> invoke(method, target);
+        }
+    }
+
+    static BiConsumer<Object, Object> setter(Method method) {
+        try {
+            MethodHandles.Lookup lookup = lookupFor(method.getDeclaringClass());
+            MethodHandle handle = lookup.unreflect(method);
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        SETTER_TYPE,
+                        handle,
+                        MethodType.methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+                return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("Cannot spin setter lambda for {}, using method handle", method, e);
+                return setter(handle);
+            }
+        } catch (IllegalAccessException e) {
+            log.debug("Cannot look up {}, using reflection", method, e);
+            return (target, value) -> invoke(method, target, value);
+        }
+    }
+
+    static Function<Object, Object> fieldGetter(Field field) {
+        try {
+            return getter(lookupFor(field.getDeclaringClass()).unreflectGetter(field));
+        } catch (IllegalAccessException e) {
+            log.debug("Cannot look up {}, using reflection", field, e);
+            return target -> {
+                try {
+                    return field.get(target);
+                } catch (IllegalAccessException ex) {
+                    throw CustomException.get(CustomException.ErrorCode.INTERNAL, ex);
+                }
+            };
+        }
+    }
+
+    static BiConsumer<Object, Object> fieldSetter(Field field) {
+        if (Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+            return null;
+        }
+        try {
+            return setter(lookupFor(field.getDeclaringClass()).unreflectSetter(field));
+        } catch (IllegalAccessException e) {
+            log.debug("Cannot look up {}, using reflection", field, e);
+            return (target, value) -> {
+                try {
+                    field.set(target, value);
+                } catch (IllegalAccessException ex) {
+                    throw CustomException.get(CustomException.ErrorCode.INTERNAL, ex);
+                }
+            };
+        }
+    }
+
+    private static Function<Object, Object> getter(MethodHandle handle) {
+        MethodHandle generic = handle.asType(GETTER_TYPE);
+        return target -> {
+            try {
+                return generic.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw CustomException.get(CustomException.ErrorCode.INTERNAL, t);
+            }
+        };
+    }
+
+    private static BiConsumer<Object, Object> setter(MethodHandle handle) {
+        MethodHandle generic = handle.asType(SETTER_TYPE);
+        return (target, value) -> {
+            try {
+                generic.invokeExact(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw CustomException.get(CustomException.ErrorCode.INTERNAL, t);
+            }
+        };
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw CustomException.get(CustomException.ErrorCode.INTERNAL, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw CustomException.get(CustomException.ErrorCode.INTERNAL, e);
+        }
+    }
+
+    private static MethodHandles.Lookup lookupFor(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+}
@@ -1,35 +1,76 @@
 package com.arlias.quarkus_crudify.resource;
 
+import com.arlias.quarkus_crudify.enums.CountMode;
 import com.arlias.quarkus_crudify.enums.ExecutionPhase;
 import com.arlias.quarkus_crudify.exception.CustomException;
 import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
 import com.arlias.quarkus_crudify.service.CRUDManager;
 import com.arlias.quarkus_crudify.service.PanacheEntityManager;
+import com.arlias.quarkus_crudify.service.QueryPlanCache;
 import com.arlias.quarkus_crudify.service.TransactionsEnvs;
 import com.arlias.quarkus_crudify.service.common.FindAllSelectionType;
 import com.arlias.quarkus_crudify.util.CrudifyFramework;
+import com.arlias.quarkus_crudify.util.KeysetCursor;
+import com.arlias.quarkus_crudify.util.ResponseCache;
 import com.arlias.quarkus_crudify.util.SortInput;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.quarkus.vertx.web.*;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.tuples.Tuple2;
 import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @ApplicationScoped
 @Slf4j
 public class CRUDResource {
 
+    private static final int DEFAULT_FETCH_SIZE = 500;
+
+    private static final String GENERATED_PATH = "/generated/";
+
+    private static final Set<String> RESERVED_PARAMS = Set.of("search", "page", "size", "by", "desc", "count", "fetch",
+            "selection_type", KeysetCursor.AFTER_PARAM, TransactionsEnvs.RESPONSE_FIELD, TransactionsEnvs.EXPAND);
+
+    private static final ObjectReader BULK_READER = new ObjectMapper().readerFor(LinkedHashMap.class);
+
     @Inject
     CRUDManager crudManager;
 
+    @Inject
+    ResponseCache responseCache;
+
+    @RouteFilter
+    void responseCacheFilter(RoutingContext rc) {
+        if (responseCache.isEnabled() && rc.request().method() == HttpMethod.GET) {
+            String path = rc.normalizedPath();
+            int start = path.indexOf(GENERATED_PATH);
+            if (start >= 0) {
+                String[] segments = path.substring(start + GENERATED_PATH.length()).split("/");
+                Class<?> type = crudManager.entityClassOf(segments[0]);
+                boolean streaming = segments.length > 1 && segments[1].equals("_stream");
+                if (type != null && !streaming && responseCache.tryAnswer(rc, type)) {
+                    return;
+                }
+            }
+        }
+        rc.next();
+    }
+
     @Route(path = "generated/:entity", produces = ReactiveRoutes.APPLICATION_JSON, methods = Route.HttpMethod.POST)
     public Uni<?> saveEndpoint(RoutingExchange ex, @Param String entity, @Body LinkedHashMap<String, Object> data) throws JsonProcessingException {
         log.info("POST on {} from {}", entity, ex.request().remoteAddress().host());
@@ -38,9 +79,7 @@ public class CRUDResource {
             try {
                 return crudManager.loadManager(entity).save(data);
             } catch (CustomException e) {
-                ex.response().setStatusCode(e.getErrorCode().code);
-                ex.response().setStatusMessage(e.getParsedErrorMessage());
-                return e.getExtensions();
+                return CrudifyFramework.failure(e);
             }
         });
     }
@@ -65,31 +104,24 @@ public class CRUDResource {
             );
 
             Map<String, Tuple2<String, String>> filters = queryParams.names().parallelStream()
-                    .filter(n -> !List.of("search", "page", "size", "by", "desc", TransactionsEnvs.RESPONSE_FIELD).contains(n))
-                    .map(n -> {
-                        String filterData = queryParams.get(n);
-                        int opIndex = filterData.indexOf(" ");
-                        if(opIndex == -1){
-                            return Map.entry(n, Tuple2.of("=", filterData));
-                        } else {
-                            String operation = filterData.substring(0, opIndex);
-                            String filter = filterData.substring(opIndex + 1);
-                            return Map.entry(n, Tuple2.of(operation, filter));
-                        }
-                    })
+                    .filter(n -> !RESERVED_PARAMS.contains(n))
+                    .map(n -> Map.entry(n, toFilter(queryParams.get(n))))
                     .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
-            return manager.performCrudAndBuildListResponse(() -> {
-                switch (selectionType) {
-                    case ARCHIVED:
-                        return Tuple2.of(manager.findAllArchived(filters, search, page, size, sort), manager.countAllArchivedPages(filters, search, size));
-                    case ALL:
-                        return Tuple2.of(manager.findAllGeneral(filters, search, page, size, sort), manager.countAllGeneralPages(filters, search, size));
-                    case STANDART:
-                    default:
-                        return Tuple2.of(manager.findAll(filters, search, page, size, sort), manager.countAllPages(filters, search, size));
-                }
-            });
+            if (queryParams.contains(KeysetCursor.AFTER_PARAM)) {
+                KeysetCursor after = KeysetCursor.decode(queryParams.get(KeysetCursor.AFTER_PARAM));
+                return manager.performCrudAndBuildObjectResponse(() -> {
+                    List<PanacheCustomEntity> data = manager.findAllAfter(selectionType, filters, search, size, sort, after);
+                    Map<String, Object> res = new LinkedHashMap<>();
+                    res.put("data", data);
+                    res.put("next", manager.nextCursor(data, size, sort));
+                    return res;
+                });
+            }
+
+            CountMode countMode = CountMode.of(ex.getParam("count").orElse(null));
+
+            return manager.performCrudAndBuildObjectResponse(() -> manager.findPage(selectionType, countMode, filters, search, page, size, sort));
         });
     }
 
@@ -108,18 +140,8 @@ public class CRUDResource {
             String search = ex.getParam("search").orElse("");
 
             Map<String, Tuple2<String, String>> filters = queryParams.names().parallelStream()
-                    .filter(n -> !List.of("search", "page", "size", "by", "desc", TransactionsEnvs.RESPONSE_FIELD).contains(n))
-                    .map(n -> {
-                        String filterData = queryParams.get(n);
-                        int opIndex = filterData.indexOf(" ");
-                        if(opIndex == -1){
-                            return Map.entry(n, Tuple2.of("=", filterData));
-                        } else {
-                            String operation = filterData.substring(0, opIndex);
-                            String filter = filterData.substring(opIndex + 1);
-                            return Map.entry(n, Tuple2.of(operation, filter));
-                        }
-                    })
+                    .filter(n -> !RESERVED_PARAMS.contains(n))
+                    .map(n -> Map.entry(n, toFilter(queryParams.get(n))))
                     .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
             Map<String, Long> res = new HashMap<>();
@@ -127,8 +149,10 @@ public class CRUDResource {
             switch (selectionType) {
                 case ARCHIVED:
                     res.put("count", manager.countAllArchived(filters, search));
+                    break;
                 case ALL:
                     res.put("count", manager.countAllGeneral(filters, search));
+                    break;
                 case STANDART:
                 default:
                     res.put("count", manager.countAll(filters, search));
@@ -139,6 +163,27 @@ public class CRUDResource {
     }
 
 
+    //NOTE declared before generated/:entity/:id like count
+    @Route(path = "generated/:entity/_stream", methods = Route.HttpMethod.GET)
+    public void streamEndpoint(RoutingExchange ex, @Param String entity) {
+
+        log.info("GET on {}/_stream from {}", entity, ex.request().remoteAddress().host());
+
+        FindAllSelectionType selectionType = FindAllSelectionType.valueOf(ex.getParam("selection_type").orElse("STANDART"));
+        MultiMap queryParams = ex.context().queryParams();
+        String search = ex.getParam("search").orElse("");
+        int fetchSize = ex.getParam("fetch").map(Integer::parseInt).orElse(DEFAULT_FETCH_SIZE);
+        SortInput sort = SortInput.of(
+                Optional.ofNullable(queryParams.getAll("by")).orElse(List.of("id")).toArray(String[]::new),
+                ex.getParam("desc").map(Boolean::parseBoolean).orElse(true)
+        );
+        Map<String, Tuple2<String, String>> filters = queryParams.names().stream()
+                .filter(n -> !RESERVED_PARAMS.contains(n))
+                .collect(Collectors.toMap(n -> n, n -> toFilter(queryParams.get(n))));
+
+        CrudifyFramework.stream(ex, sink -> crudManager.loadManager(entity).streamAll(selectionType, filters, search, sort, fetchSize, sink));
+    }
+
     @Route(path = "generated/:entity/:id", produces = ReactiveRoutes.APPLICATION_JSON, methods = {Route.HttpMethod.PUT, Route.HttpMethod.GET})
     public Uni<?> findSingleOrUpdateEndpoint(RoutingExchange ex, @Body LinkedHashMap<String, Object> data, @Param String entity, @Param Long id) throws JsonProcessingException {
 
@@ -157,38 +202,30 @@ public class CRUDResource {
                             if (crudResult != null) {
                                 return crudResult;
                             } else {
-                                ex.response().setStatusCode(Response.Status.NOT_FOUND.getStatusCode());
-                                ex.response().setStatusMessage("No Result");
-                                return "No Result";
+                                return CrudifyFramework.status(Response.Status.NOT_FOUND.getStatusCode(), "No Result", "No Result");
                             }
                         case ARCHIVED:
                             crudResult = manager.findArchivedById(id);
                             if (crudResult != null) {
-                                return crudResult.toJson();
+                                return crudResult;
                             } else {
-                                ex.response().setStatusCode(Response.Status.NOT_FOUND.getStatusCode());
-                                ex.response().setStatusMessage("No Result");
-                                return "No Result";
+                                return CrudifyFramework.status(Response.Status.NOT_FOUND.getStatusCode(), "No Result", "No Result");
                             }
                         case STANDART:
                         default:
                             crudResult = manager.findById(id);
                             if (crudResult != null) {
-                                return Response.ok(crudResult.toJson()).build();
+                                return crudResult;
                             } else {
-                                ex.response().setStatusCode(Response.Status.NOT_FOUND.getStatusCode());
-                                ex.response().setStatusMessage("No Result");
-                                return "No Result";
+                                return CrudifyFramework.status(Response.Status.NOT_FOUND.getStatusCode(), "No Result", "No Result");
                             }
                     }
                 case "PUT":
                     crudResult = manager.update(id, new ObjectMapper().readValue(ex.context().getBodyAsString(), LinkedHashMap.class));
                     if (crudResult != null) {
-                        return Response.ok(crudResult.toJson()).build();
+                        return crudResult;
                     } else {
-                        ex.response().setStatusCode(Response.Status.NOT_MODIFIED.getStatusCode());
-                        ex.response().setStatusMessage(Response.Status.NOT_MODIFIED.getReasonPhrase());
-                        return Response.Status.NOT_MODIFIED.getReasonPhrase();
+                        return CrudifyFramework.status(Response.Status.NOT_MODIFIED.getStatusCode(), Response.Status.NOT_MODIFIED.getReasonPhrase(), Response.Status.NOT_MODIFIED.getReasonPhrase());
                     }
             }
 
@@ -198,6 +235,125 @@ public class CRUDResource {
     }
 
 
+    @Route(path = "generated/:entity/_bulk", produces = ReactiveRoutes.APPLICATION_JSON, methods = Route.HttpMethod.POST)
+    public Uni<?> bulkSaveEndpoint(RoutingExchange ex, @Param String entity, @Body Buffer body) {
+        log.info("POST on {}/_bulk from {}", entity, ex.request().remoteAddress().host());
+
+        return CrudifyFramework.buildResponse(ex, () -> {
+            PanacheEntityManager manager = crudManager.loadManager(entity);
+            boolean echo = ex.getParam("echo").map(Boolean::parseBoolean).orElse(false);
+            Stream<LinkedHashMap<String, Object>> rows = readRows(body);
+            try {
+                return echo ? manager.bulkSave(rows) : manager.bulkIngest(rows, true);
+            } catch (CustomException e) {
+                return CrudifyFramework.failure(e);
+            }
+        });
+    }
+
+    @Route(path = "generated/:entity/_bulk/merge", produces = ReactiveRoutes.APPLICATION_JSON, methods = Route.HttpMethod.POST)
+    public Uni<?> bulkMergeEndpoint(RoutingExchange ex, @Param String entity, @Body Buffer body) {
+        log.info("POST on {}/_bulk/merge from {}", entity, ex.request().remoteAddress().host());
+
+        return CrudifyFramework.buildResponse(ex, () -> {
+            PanacheEntityManager manager = crudManager.loadManager(entity);
+            boolean echo = ex.getParam("echo").map(Boolean::parseBoolean).orElse(false);
+            try {
+                return echo ? manager.bulkMerge(readRows(body).collect(Collectors.toList())) : manager.bulkMerge(readRows(body), true);
+            } catch (CustomException e) {
+                return CrudifyFramework.failure(e);
+            }
+        });
+    }
+
+    @Route(path = "generated/:entity/_bulk/delete", produces = ReactiveRoutes.APPLICATION_JSON, methods = Route.HttpMethod.POST)
+    public Uni<?> bulkDeleteEndpoint(RoutingExchange ex, @Param String entity, @Body LinkedHashMap<String, Object> data) {
+        log.info("POST on {}/_bulk/delete from {}", entity, ex.request().remoteAddress().host());
+
+        return CrudifyFramework.buildResponse(ex, () -> {
+            boolean hard = ex.getParam("hard").map(Boolean::parseBoolean).orElse(false);
+            PanacheEntityManager manager = crudManager.loadManager(entity);
+            Object ids = data == null ? null : data.get("ids");
+            Object where = data == null ? null : data.get("where");
+            if (ids instanceof List) {
+                List<Long> parsedIds = ((List<?>) ids).stream()
+                        .map(CRUDResource::toId)
+                        .collect(Collectors.toList());
+                return manager.performCrudAndBuildObjectResponse(() -> manager.bulkDelete(parsedIds, hard));
+            } else if (where instanceof Map) {
+                Map<String, Tuple2<String, String>> filters = ((Map<?, ?>) where).entrySet().stream()
+                        .collect(Collectors.toMap(e -> String.valueOf(e.getKey()), e -> toFilter(String.valueOf(e.getValue()))));
+                return manager.performCrudAndBuildObjectResponse(() -> Map.of("total", manager.bulkDeleteWhere(filters, hard)));
+            }
+            CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Bulk delete needs ids or where").boom();
+            return "";
+        });
+    }
+
+    private static Long toId(Object id) {
+        try {
+            return id == null ? null : Long.valueOf(String.valueOf(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Stream<LinkedHashMap<String, Object>> readRows(Buffer body) {
+        if (body == null || body.length() == 0) {
+            CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Empty bulk body").boom();
+        }
+        MappingIterator<LinkedHashMap<String, Object>> rows;
+        try {
+            rows = BULK_READER.readValues(body.getBytes());
+        } catch (IOException e) {
+            throw invalidRow(0, e);
+        }
+        Iterator<LinkedHashMap<String, Object>> checked = new Iterator<>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return rows.hasNextValue();
+                } catch (IOException e) {
+                    throw invalidRow(index, e);
+                }
+            }
+
+            @Override
+            public LinkedHashMap<String, Object> next() {
+                try {
+                    LinkedHashMap<String, Object> row = rows.nextValue();
+                    index++;
+                    return row;
+                } catch (IOException e) {
+                    throw invalidRow(index, e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(checked, Spliterator.ORDERED), false);
+    }
+
+    private static CustomException invalidRow(int index, IOException e) {
+        String reason = e instanceof JsonProcessingException ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage();
+        return CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Bulk row {} is not a valid JSON object: {}", index, reason);
+    }
+
+    private static Tuple2<String, String> toFilter(String filterData) {
+        String lower = filterData.toLowerCase(Locale.ROOT);
+        for (String operator : QueryPlanCache.WORD_OPERATORS) {
+            if (lower.equals(operator) || lower.startsWith(operator + " ")) {
+                return Tuple2.of(operator, filterData.substring(Math.min(filterData.length(), operator.length() + 1)));
+            }
+        }
+        int opIndex = filterData.indexOf(" ");
+        if (opIndex == -1) {
+            return Tuple2.of("=", filterData);
+        }
+        return Tuple2.of(filterData.substring(0, opIndex), filterData.substring(opIndex + 1));
+    }
+
     @Route(path = "generated/:entity/:id", produces = ReactiveRoutes.APPLICATION_JSON, methods = Route.HttpMethod.DELETE)
     public Uni<?> deleteEndpoint(RoutingExchange ex, @Param String entity, @Param Long id) throws JsonProcessingException {
         log.info("DELETE on {}/{} from", id, entity, ex.request().remoteAddress().host());
@@ -1,57 +1,64 @@
 package com.arlias.quarkus_crudify.service;
 
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
 import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
 import com.arlias.quarkus_crudify.service.common.CRUDEntity;
+import io.quarkus.runtime.Startup;
 import lombok.extern.slf4j.Slf4j;
-import org.reflections.Reflections;
 
 import javax.annotation.PostConstruct;
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.Entity;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
+@Startup
 @Singleton
 public class CRUDManager {
 
-    private final Map<String, CRUDEntity> entitiesClasses = new HashMap<>();
+    private Map<String, CRUDEntity> entitiesClasses = Map.of();
 
-    private final Map<String, PanacheEntityManager<? extends PanacheCustomEntity>> managers = new HashMap<>();
+    private Map<String, PanacheEntityManager<? extends PanacheCustomEntity>> managers = Map.of();
 
     private static final String ENTITY_PACKAGE_NAME = "com.arlias.quarkus_crudify.model";
 
     @ConfigProperty(name = "crudify.entitypath")
     String entityPath;
 
+    @ConfigProperty(name = "crudify.persistence.backend", defaultValue = "blocking")
+    String persistenceBackend;
+
+    @Inject
+    EntityManagerFactory entityManagerFactory;
+
 
     @PostConstruct
     public void init() {
 
         log.info("Initializing entity managers configuration");
 
-        for (Class<? extends PanacheCustomEntity> entityClass : new Reflections(ENTITY_PACKAGE_NAME).getSubTypesOf(PanacheCustomEntity.class)) {
+        if (!persistenceBackend.equalsIgnoreCase("blocking")) {
+            CustomException.get(CustomException.ErrorCode.INTERNAL, "Persistence backend {} not available, only blocking is supported", persistenceBackend).boom();
+        }
 
-            if (entityClass.isAnnotationPresent(Entity.class)) {
+        long start = System.nanoTime();
+        Map<String, CRUDEntity> classes = new HashMap<>();
+        Map<String, PanacheEntityManager<? extends PanacheCustomEntity>> entityManagers = new HashMap<>();
 
-                log.info("Configuring entity {}", entityClass.getSimpleName());
+        for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
 
-                CRUDEntity triade = new CRUDEntity();
+            Class<?> javaType = entityType.getJavaType();
 
-                triade.entity = entityClass;
+            if (javaType != null && PanacheCustomEntity.class.isAssignableFrom(javaType) && javaType.isAnnotationPresent(Entity.class)
+                    && (javaType.getName().startsWith(ENTITY_PACKAGE_NAME) || javaType.getName().startsWith(entityPath))) {
 
-                if (triade.isValid()) {
-                    entitiesClasses.put(entityClass.getAnnotation(Entity.class).name(), triade);
-                } else {
-                    log.warn("Error occurred while configuring entity {}, this entity could be unavailable", entityClass.getSimpleName());
-                }
-            }
-        }
-
-        for (Class<? extends PanacheCustomEntity> entityClass : new Reflections(entityPath).getSubTypesOf(PanacheCustomEntity.class)) {
-
-            if (entityClass.isAnnotationPresent(Entity.class)) {
+                Class<? extends PanacheCustomEntity> entityClass = (Class<? extends PanacheCustomEntity>) javaType;
 
                 log.info("Configuring entity {}", entityClass.getSimpleName());
 
@@ -60,31 +67,37 @@ public class CRUDManager {
                 triade.entity = entityClass;
 
                 if (triade.isValid()) {
-                    entitiesClasses.put(entityClass.getAnnotation(Entity.class).name(), triade);
+                    EntityMetadata.register(entityClass);
+                    String path = entityClass.getAnnotation(Entity.class).name();
+                    classes.put(path, triade);
+                    entityManagers.put(path, new PanacheEntityManager(entityClass));
                 } else {
                     log.warn("Error occurred while configuring entity {}, this entity could be unavailable", entityClass.getSimpleName());
                 }
             }
         }
 
+        this.entitiesClasses = Map.copyOf(classes);
+        this.managers = Map.copyOf(entityManagers);
+
+        log.info("Configured {} entities in {} ms", managers.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public Class<? extends PanacheCustomEntity> entityClassOf(String path) {
+        CRUDEntity triade = entitiesClasses.get(path);
+        return triade == null ? null : triade.entity;
     }
 
     public <ENTITY extends PanacheCustomEntity> PanacheEntityManager<ENTITY> loadManager(String path) {
-        if (!managers.containsKey(path)) {
-            CRUDEntity triade = entitiesClasses.get(path);
-            managers.put(path, new PanacheEntityManager(triade.entity));
+        PanacheEntityManager<? extends PanacheCustomEntity> manager = managers.get(path);
+        if (manager == null) {
+            CustomException.get(CustomException.ErrorCode.NOT_FOUND, "Entity {} not found", path).boom();
         }
-        return (PanacheEntityManager<ENTITY>) managers.get(path);
+        return (PanacheEntityManager<ENTITY>) manager;
     }
 
     public <ENTITY extends PanacheCustomEntity> PanacheEntityManager<ENTITY> loadManager(Class<? extends PanacheCustomEntity> clazz) {
-        String path = clazz.getAnnotation(Entity.class).name();
-        if (!this.managers.containsKey(path)) {
-            CRUDEntity triade = (CRUDEntity)this.entitiesClasses.get(path);
-            this.managers.put(path, new PanacheEntityManager(triade.entity));
-        }
-
-        return (PanacheEntityManager)this.managers.get(path);
+        return loadManager(clazz.getAnnotation(Entity.class).name());
     }
 
 }
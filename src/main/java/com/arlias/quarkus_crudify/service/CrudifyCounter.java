@@ -0,0 +1,139 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.configuration.CrudifyWorkerPool;
+import com.arlias.quarkus_crudify.exception.CustomException;
+import io.quarkus.hibernate.orm.panache.runtime.JpaOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Singleton
+public class CrudifyCounter {
+
+    @ConfigProperty(name = "crudify.count.estimate-ttl-seconds", defaultValue = "30")
+    long estimateTtlSeconds;
+
+    @ConfigProperty(name = "crudify.count.estimate-max-entries", defaultValue = "10000")
+    int estimateMaxEntries;
+
+    @Inject
+    CrudifyWorkerPool workerPool;
+
+    private final Map<List<Object>, CachedCount> estimates = new ConcurrentHashMap<>();
+
+    private final LongAdder concurrent = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+    private final LongAdder estimateHits = new LongAdder();
+    private final LongAdder estimateMisses = new LongAdder();
+
+
+    //NOTE a count no worker picked up by the time it is joined runs on the caller, a saturated pool never deadlocks
+    public PendingCount countConcurrently(Class<?> type, String query, Map<String, Object> params) {
+        PendingCount pending = new PendingCount(type, query, Map.copyOf(params));
+        try {
+            workerPool.executeIsolated(pending::runIfUnclaimed);
+        } catch (RejectedExecutionException e) {
+            log.debug("Operation [{}]: no worker free for count, counting inline", TransactionsEnvs.currentOperationId());
+        }
+        return pending;
+    }
+
+    public long estimate(Class<?> type, String query, Map<String, Object> params) {
+        List<Object> key = List.of(type, query, Map.copyOf(params));
+        long now = System.nanoTime();
+        CachedCount cached = estimates.get(key);
+        if (cached != null && cached.expiresAt - now > 0) {
+            estimateHits.increment();
+            return cached.count;
+        }
+        estimateMisses.increment();
+        long count = new JpaOperations().count(type, query, params);
+        if (estimates.size() >= estimateMaxEntries) {
+            estimates.values().removeIf(c -> c.expiresAt - now <= 0);
+            if (estimates.size() >= estimateMaxEntries) {
+                estimates.clear();
+            }
+        }
+        estimates.put(key, new CachedCount(count, now + TimeUnit.SECONDS.toNanos(estimateTtlSeconds)));
+        return count;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exact.concurrent", concurrent.sum());
+        stats.put("exact.inline", inline.sum());
+        stats.put("estimate.hits", estimateHits.sum());
+        stats.put("estimate.misses", estimateMisses.sum());
+        stats.put("estimate.entries", estimates.size());
+        return stats;
+    }
+
+    private static class CachedCount {
+
+        private final long count;
+
+        private final long expiresAt;
+
+        CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public class PendingCount {
+
+        private final Class<?> type;
+
+        private final String query;
+
+        private final Map<String, Object> params;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        PendingCount(Class<?> type, String query, Map<String, Object> params) {
+            this.type = type;
+            this.query = query;
+            this.params = params;
+        }
+
+        private void runIfUnclaimed() {
+            if (claimed.compareAndSet(false, true)) {
+                concurrent.increment();
+                try {
+                    result.complete(new JpaOperations().count(type, query, params));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+        }
+
+        public long join() {
+            if (claimed.compareAndSet(false, true)) {
+                inline.increment();
+                return new JpaOperations().count(type, query, params);
+            }
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw CustomException.get(CustomException.ErrorCode.INTERNAL, e.getCause());
+            }
+        }
+    }
+
+}
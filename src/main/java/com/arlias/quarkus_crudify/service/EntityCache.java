@@ -0,0 +1,215 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
+import com.arlias.quarkus_crudify.util.annotations.CrudCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.enterprise.inject.spi.CDI;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.UserTransaction;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+@Slf4j
+public class EntityCache<ENTITY extends PanacheCustomEntity> {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder bypasses = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    private static final Map<String, Cache<Long, ?>> caches = new ConcurrentHashMap<>();
+
+    private final Class<ENTITY> type;
+
+    private final Cache<Long, Snapshot<ENTITY>> snapshots;
+
+    private final EntityMetadata metadata;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public EntityCache(Class<ENTITY> type, EntityMetadata metadata) {
+        this.type = type;
+        this.metadata = metadata;
+        CrudCache config = metadata.getCrudCache();
+        if (config == null) {
+            this.snapshots = null;
+        } else {
+            this.snapshots = Caffeine.newBuilder()
+                    .expireAfterWrite(Duration.ofSeconds(config.ttlSeconds()))
+                    .maximumSize(config.maxSize())
+                    .build();
+            caches.put(type.getSimpleName(), snapshots);
+        }
+    }
+
+    public boolean isEnabled() {
+        return snapshots != null;
+    }
+
+    //NOTE inside a transaction the managed row is returned and nothing is stored, uncommitted state must never be cached
+    public ENTITY get(Long id, Function<Long, ENTITY> loader) {
+        if (snapshots == null || id == null) {
+            return loader.apply(id);
+        }
+        if (inTransaction()) {
+            bypasses.increment();
+            return loader.apply(id);
+        }
+        Set<String> written = writtenRelations();
+        Snapshot<ENTITY> snapshot = snapshots.getIfPresent(id);
+        if (snapshot != null && Collections.disjoint(snapshot.missing, written)) {
+            hits.increment();
+            return type.cast(copy(snapshot.entity, Set.of(), new HashSet<>(), new IdentityHashMap<>()));
+        }
+        misses.increment();
+        long loadedAt = generation.get();
+        ENTITY entity = loader.apply(id);
+        if (entity != null) {
+            Snapshot<ENTITY> loaded;
+            try {
+                Set<String> missing = new HashSet<>();
+                loaded = new Snapshot<>(type.cast(copy(entity, written, missing, new IdentityHashMap<>())), missing);
+            } catch (RuntimeException e) {
+                log.warn("Entity {} {} cannot be snapshot, not cached", type.getSimpleName(), id, e);
+                return entity;
+            }
+            if (generation.get() == loadedAt) {
+                snapshots.put(id, loaded);
+            }
+        }
+        return entity;
+    }
+
+    public void invalidate(Long id) {
+        if (snapshots != null && id != null) {
+            generation.incrementAndGet();
+            snapshots.invalidate(id);
+            invalidations.increment();
+        }
+    }
+
+    public void invalidate(Iterable<Long> ids) {
+        if (snapshots != null) {
+            generation.incrementAndGet();
+            for (Long id : ids) {
+                if (id != null) {
+                    snapshots.invalidate(id);
+                }
+            }
+            invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        if (snapshots != null) {
+            generation.incrementAndGet();
+            snapshots.invalidateAll();
+            invalidations.increment();
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        long total = hits.sum() + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hit-rate-percent", total == 0 ? 0 : hits.sum() * 100 / total);
+        stats.put("bypasses", bypasses.sum());
+        stats.put("invalidations", invalidations.sum());
+        caches.forEach((name, cache) -> stats.put("entries." + name, cache.estimatedSize()));
+        return stats;
+    }
+
+    private Set<String> writtenRelations() {
+        List<String> resFields = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.RESPONSE_FIELD);
+        List<String> expand = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.EXPAND);
+        Set<String> written = new HashSet<>();
+        for (EntityMetadata.PropertyMetadata p : metadata.getProperties()) {
+            if (p.getKind() != EntityMetadata.PropertyKind.VALUE && (resFields == null || !resFields.contains(p.getName())) && metadata.isExpanded(p.getName(), expand)) {
+                written.add(p.getName());
+            }
+        }
+        return written;
+    }
+
+    private static PanacheCustomEntity copy(PanacheCustomEntity source, Set<String> initialize, Set<String> missing, Map<Object, PanacheCustomEntity> copies) {
+        PanacheCustomEntity entity = (PanacheCustomEntity) Hibernate.unproxy(source);
+        PanacheCustomEntity copy = copies.get(entity);
+        if (copy != null) {
+            return copy;
+        }
+        try {
+            copy = entity.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw CustomException.get(CustomException.ErrorCode.INTERNAL, e);
+        }
+        copies.put(entity, copy);
+        copy.rawCopy(entity);
+        for (EntityMetadata.BeanProperty property : EntityMetadata.of(entity.getClass()).getBeanProperties()) {
+            Object value = property.get(copy);
+            if (!(value instanceof PanacheCustomEntity || value instanceof Collection || value instanceof Map)) {
+                continue;
+            }
+            if (!Hibernate.isInitialized(value)) {
+                if (!initialize.contains(property.getName())) {
+                    property.set(copy, null);
+                    missing.add(property.getName());
+                    continue;
+                }
+                Hibernate.initialize(value);
+            }
+            if (value instanceof PanacheCustomEntity) {
+                property.set(copy, copy((PanacheCustomEntity) value, Set.of(), new HashSet<>(), copies));
+            } else if (value instanceof Collection) {
+                property.set(copy, copyCollection((Collection<?>) value, copies));
+            } else {
+                property.set(copy, new LinkedHashMap<>((Map<?, ?>) value));
+            }
+        }
+        return copy;
+    }
+
+    private static Collection<Object> copyCollection(Collection<?> source, Map<Object, PanacheCustomEntity> copies) {
+        Collection<Object> copy = source instanceof Set ? new LinkedHashSet<>() : new ArrayList<>(source.size());
+        for (Object element : source) {
+            if (!(element instanceof PanacheCustomEntity)) {
+                copy.add(element);
+            } else if (Hibernate.isInitialized(element)) {
+                copy.add(copy((PanacheCustomEntity) element, Set.of(), new HashSet<>(), copies));
+            }
+        }
+        return copy;
+    }
+
+    private static boolean inTransaction() {
+        try {
+            return CDI.current().select(UserTransaction.class).get().getStatus() != Status.STATUS_NO_TRANSACTION;
+        } catch (SystemException e) {
+            return true;
+        }
+    }
+
+    private static class Snapshot<ENTITY> {
+
+        private final ENTITY entity;
+
+        private final Set<String> missing;
+
+        Snapshot(ENTITY entity, Set<String> missing) {
+            this.entity = entity;
+            this.missing = missing;
+        }
+    }
+
+}
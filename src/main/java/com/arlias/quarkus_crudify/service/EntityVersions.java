@@ -0,0 +1,24 @@
+package com.arlias.quarkus_crudify.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EntityVersions {
+
+    private static final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public static long current(Class<?> type) {
+        return counter(type).get();
+    }
+
+    public static long bump(Class<?> type) {
+        return counter(type).incrementAndGet();
+    }
+
+    private static AtomicLong counter(Class<?> type) {
+        AtomicLong version = versions.get(type);
+        return version != null ? version : versions.computeIfAbsent(type, t -> new AtomicLong());
+    }
+
+}
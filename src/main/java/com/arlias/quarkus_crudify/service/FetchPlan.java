@@ -0,0 +1,114 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.Transient;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class FetchPlan {
+
+    private static final LongAdder batches = new LongAdder();
+
+    private final String entityName;
+
+    private final List<EntityMetadata.PropertyMetadata> toOne = new ArrayList<>();
+
+    private final List<EntityMetadata.PropertyMetadata> toMany = new ArrayList<>();
+
+    private final EntityMetadata metadata;
+
+    public FetchPlan(EntityMetadata metadata) {
+        this.metadata = metadata;
+        Entity entity = metadata.getType().getAnnotation(Entity.class);
+        this.entityName = entity == null || entity.name().isBlank() ? metadata.getType().getSimpleName() : entity.name();
+        for (EntityMetadata.PropertyMetadata p : metadata.getProperties()) {
+            if (!p.isAccessible() || p.getKind() == EntityMetadata.PropertyKind.VALUE || !isMapped(p.getName())) {
+                continue;
+            }
+            (p.getKind() == EntityMetadata.PropertyKind.ENTITY ? toOne : toMany).add(p);
+        }
+    }
+
+    public void load(EntityManager entityManager, List<? extends PanacheCustomEntity> rows, List<String> resFields, List<String> expand) {
+        if (rows.isEmpty() || (toOne.isEmpty() && toMany.isEmpty()) || !entityManager.contains(rows.get(0))) {
+            return;
+        }
+        int batchSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.id-batch-size", Integer.class).orElse(1000);
+        for (EntityMetadata.PropertyMetadata p : toOne) {
+            if (isWritten(p, resFields, expand)) {
+                loadToOne(entityManager, rows, p, batchSize);
+            }
+        }
+        for (EntityMetadata.PropertyMetadata p : toMany) {
+            if (isWritten(p, resFields, expand)) {
+                loadToMany(entityManager, rows, p, batchSize);
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        return Map.of("batches", batches.sum());
+    }
+
+    private boolean isWritten(EntityMetadata.PropertyMetadata p, List<String> resFields, List<String> expand) {
+        return (resFields == null || !resFields.contains(p.getName())) && metadata.isExpanded(p.getName(), expand);
+    }
+
+    private void loadToOne(EntityManager entityManager, List<? extends PanacheCustomEntity> rows, EntityMetadata.PropertyMetadata p, int batchSize) {
+        Map<Class<?>, Set<Object>> idsByClass = new LinkedHashMap<>();
+        for (PanacheCustomEntity row : rows) {
+            Object value = p.get(row);
+            if (value instanceof HibernateProxy) {
+                LazyInitializer initializer = ((HibernateProxy) value).getHibernateLazyInitializer();
+                if (initializer.isUninitialized()) {
+                    idsByClass.computeIfAbsent(initializer.getPersistentClass(), c -> new LinkedHashSet<>()).add(initializer.getIdentifier());
+                }
+            }
+        }
+        Session session = entityManager.unwrap(Session.class);
+        idsByClass.forEach((type, ids) -> {
+            batches.increment();
+            session.byMultipleIds(type).withBatchSize(batchSize).multiLoad(new ArrayList<>(ids));
+        });
+    }
+
+    private void loadToMany(EntityManager entityManager, List<? extends PanacheCustomEntity> rows, EntityMetadata.PropertyMetadata p, int batchSize) {
+        List<Long> ids = new ArrayList<>();
+        for (PanacheCustomEntity row : rows) {
+            Object value = p.get(row);
+            if (value != null && !Hibernate.isInitialized(value) && row.id != null) {
+                ids.add(row.id);
+            }
+        }
+        String query = "select distinct e from " + entityName + " e left join fetch e." + p.getName() + " where e.id in :ids";
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.increment();
+            entityManager.createQuery(query)
+                    .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + batchSize)))
+                    .getResultList();
+        }
+    }
+
+    private boolean isMapped(String name) {
+        EntityMetadata.FieldMetadata field = metadata.getEntityField(name);
+        if (field == null) {
+            log.debug("Entity {} relation {} has no field, it is not batch loaded", metadata.getType().getSimpleName(), name);
+            return false;
+        }
+        int modifiers = field.getField().getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.getField().isAnnotationPresent(Transient.class);
+    }
+
+}
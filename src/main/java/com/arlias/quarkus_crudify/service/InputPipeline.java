@@ -0,0 +1,130 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.input_builder.common.InputBuilder;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.util.annotations.BuildInput;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.enterprise.inject.spi.CDI;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+public class InputPipeline {
+
+    private final EntityMetadata metadata;
+
+    private final Map<String, Step[]> create = new ConcurrentHashMap<>();
+
+    private final Map<String, Step[]> merge = new ConcurrentHashMap<>();
+
+    public InputPipeline(EntityMetadata metadata) {
+        this.metadata = metadata;
+    }
+
+    public void bind(Object target, Map<String, Object> input, String method, boolean merging) {
+        String key = method == null ? "" : method;
+        Step[] steps = (merging ? merge : create).computeIfAbsent(key, m -> compile(m, merging));
+        for (Step step : steps) {
+            step.apply(target, input);
+        }
+    }
+
+    private Step[] compile(String method, boolean merging) {
+        List<Step> steps = new ArrayList<>();
+        for (EntityMetadata.FieldMetadata f : metadata.getEntityFields().values()) {
+            if ((merging && f.getName().equals("id")) || !f.isInputIgnored(method)) {
+                List<Builder<?>> builders = new ArrayList<>();
+                for (BuildInput bi : f.getBuildInputs()) {
+                    if (bi.onMethods().length == 0 || Arrays.asList(bi.onMethods()).contains(method)) {
+                        InputBuilder<?, ?> bean = CDI.current().select(bi.value()).get();
+                        builders.add(Builder.of(f, bean, inputTypeOf(bi.value())));
+                    }
+                }
+                steps.add(new Step(f, builders.toArray(new Builder<?>[0])));
+            }
+        }
+        log.debug("Entity {} input for {}{}: {} fields", metadata.getType().getSimpleName(), method, merging ? " (merge)" : "", steps.size());
+        return steps.toArray(new Step[0]);
+    }
+
+    private static Class<?> inputTypeOf(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Type i : c.getGenericInterfaces()) {
+                if (i instanceof ParameterizedType && ((ParameterizedType) i).getRawType() == InputBuilder.class) {
+                    Type input = ((ParameterizedType) i).getActualTypeArguments()[0];
+                    if (input instanceof Class) {
+                        return (Class<?>) input;
+                    }
+                    if (input instanceof ParameterizedType) {
+                        return (Class<?>) ((ParameterizedType) input).getRawType();
+                    }
+                    return Object.class;
+                }
+            }
+        }
+        return Object.class;
+    }
+
+    private static class Builder<T> {
+
+        private final EntityMetadata.FieldMetadata field;
+
+        private final InputBuilder<T, ?> builder;
+
+        private final Class<T> input;
+
+        private Builder(EntityMetadata.FieldMetadata field, InputBuilder<T, ?> builder, Class<T> input) {
+            this.field = field;
+            this.builder = builder;
+            this.input = input;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Builder<?> of(EntityMetadata.FieldMetadata field, InputBuilder<?, ?> builder, Class<?> input) {
+            return new Builder<>(field, (InputBuilder<Object, ?>) builder, (Class<Object>) input);
+        }
+
+        Object build(Object value) {
+            if (value != null && !input.isInstance(value)) {
+                CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Field {} must be a {}", field.getName(), input.getSimpleName()).boom();
+            }
+            return builder.build(input.cast(value));
+        }
+    }
+
+    private static class Step {
+
+        private final EntityMetadata.FieldMetadata field;
+
+        private final Builder<?>[] builders;
+
+        private final boolean writable;
+
+        Step(EntityMetadata.FieldMetadata field, Builder<?>[] builders) {
+            this.field = field;
+            this.builders = builders;
+            this.writable = field.isWritable();
+        }
+
+        void apply(Object target, Map<String, Object> input) {
+            Object value = input.get(field.getName());
+            for (Builder<?> builder : builders) {
+                value = builder.build(value);
+            }
+            if (writable) {
+                if (value != null) {
+                    field.set(target, field.toInputValue(value));
+                } else {
+                    log.warn("Operation [{}]: Field {} setted to null", TransactionsEnvs.currentOperationId(), field.getName());
+                }
+            } else if (value != null) {
+                CustomException.get(CustomException.ErrorCode.INTERNAL, "Cannot access field {}", field.getName()).boom();
+            }
+        }
+    }
+
+}
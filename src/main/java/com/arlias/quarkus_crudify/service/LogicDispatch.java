@@ -0,0 +1,58 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.enums.ExecutionPhase;
+import com.arlias.quarkus_crudify.input_builder.common.LogicSupplier;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.util.annotations.CrudLogic;
+
+import javax.enterprise.inject.spi.CDI;
+import java.util.*;
+
+public class LogicDispatch {
+
+    private static final LogicSupplier[] NONE = new LogicSupplier[0];
+
+    private final Map<ExecutionPhase, Map<String, LogicSupplier[]>> byMethod = new EnumMap<>(ExecutionPhase.class);
+
+    private final Map<ExecutionPhase, LogicSupplier[]> anyMethod = new EnumMap<>(ExecutionPhase.class);
+
+    public LogicDispatch(EntityMetadata metadata) {
+        Map<Class<? extends LogicSupplier>, LogicSupplier> beans = new HashMap<>();
+        for (ExecutionPhase phase : ExecutionPhase.values()) {
+            List<CrudLogic> logics = new ArrayList<>();
+            Set<String> methods = new LinkedHashSet<>();
+            for (CrudLogic cl : metadata.getCrudLogics()) {
+                if (cl.executionPhase() == phase) {
+                    logics.add(cl);
+                    methods.addAll(Arrays.asList(cl.onMethods()));
+                }
+            }
+            anyMethod.put(phase, resolve(logics, null, beans));
+            Map<String, LogicSupplier[]> tables = new HashMap<>();
+            for (String method : methods) {
+                tables.put(method, resolve(logics, method, beans));
+            }
+            byMethod.put(phase, tables);
+        }
+    }
+
+    public LogicSupplier[] of(ExecutionPhase phase, String method) {
+        LogicSupplier[] suppliers = method == null ? null : byMethod.get(phase).get(method);
+        return suppliers != null ? suppliers : anyMethod.get(phase);
+    }
+
+    public boolean has(ExecutionPhase phase) {
+        return anyMethod.get(phase).length > 0 || !byMethod.get(phase).isEmpty();
+    }
+
+    private static LogicSupplier[] resolve(List<CrudLogic> logics, String method, Map<Class<? extends LogicSupplier>, LogicSupplier> beans) {
+        List<LogicSupplier> suppliers = new ArrayList<>();
+        for (CrudLogic cl : logics) {
+            if (cl.onMethods().length == 0 || (method != null && Arrays.asList(cl.onMethods()).contains(method))) {
+                suppliers.add(beans.computeIfAbsent(cl.value(), type -> CDI.current().select(type).get()));
+            }
+        }
+        return suppliers.isEmpty() ? NONE : suppliers.toArray(NONE);
+    }
+
+}
@@ -1,28 +1,37 @@
 package com.arlias.quarkus_crudify.service;
 
+import com.arlias.quarkus_crudify.enums.CountMode;
 import com.arlias.quarkus_crudify.enums.ExecutionPhase;
 import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.input_builder.common.BatchLogicSupplier;
+import com.arlias.quarkus_crudify.input_builder.common.LogicSupplier;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
 import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
+import com.arlias.quarkus_crudify.service.common.BulkReport;
+import com.arlias.quarkus_crudify.service.common.FindAllSelectionType;
+import com.arlias.quarkus_crudify.util.CrudifyFramework;
+import com.arlias.quarkus_crudify.util.KeysetCursor;
+import com.arlias.quarkus_crudify.util.LongIndex;
 import com.arlias.quarkus_crudify.util.SortInput;
 import com.arlias.quarkus_crudify.util.annotations.*;
 import io.quarkus.hibernate.orm.panache.runtime.JpaOperations;
 import io.quarkus.panache.common.Page;
-import io.quarkus.vertx.web.RoutingExchange;
 import io.smallrye.mutiny.tuples.Tuple2;
 import io.vertx.ext.web.RoutingContext;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.eclipse.microprofile.config.ConfigProvider;
 
 import javax.enterprise.inject.spi.CDI;
-import javax.persistence.Column;
+import javax.persistence.EntityManager;
 import javax.transaction.SystemException;
 import javax.transaction.UserTransaction;
 import javax.ws.rs.core.Response;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,10 +41,28 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
     @Getter
     private final Class<ENTITY> typeOfENTITY;
+    @Getter
+    private final EntityMetadata metadata;
     private final List<String> stringFields;
     private final List<String> dataFields;
     private final List<String> entityBeanFields;
-    private final Map<String, Field> entityFields;
+    private final Map<String, EntityMetadata.FieldMetadata> entityFields;
+
+    private final QueryPlanCache queryPlans;
+
+    private final EntityCache<ENTITY> entityCache;
+
+    private final InputPipeline inputPipeline;
+
+    private final LogicDispatch logicDispatch;
+
+    private final ProjectionCache projections;
+
+    private final FetchPlan fetchPlan;
+
+    private final SearchIndex searchIndex;
+
+    private static volatile CrudifyCounter counter;
 
     public String getSearchQueryParams() {
         return stringFields.parallelStream()
@@ -50,64 +77,21 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
                 .collect(Collectors.joining(" "));
     }
 
-     public synchronized String parseFilters(String query, Map<String, Object> filterParams, Map<String, Tuple2<String, String>> filters){
-        for (Map.Entry<String, Tuple2<String, String>> filter : filters.entrySet()) {
-            if(filter.getValue().getItem1().equalsIgnoreCase("lowerlike")){
-                query = query.concat(" and lower(" + filter.getKey() + ") like :" + filter.getKey());
-                filterParams.put(filter.getKey(), getFilterParamParsed(filter.getKey(), filter.getValue().getItem2().toLowerCase()));
-            } else {
-                query = query.concat(" and " + filter.getKey() + " " + filter.getValue().getItem1() + " :" + filter.getKey());
-                filterParams.put(filter.getKey(), getFilterParamParsed(filter.getKey(), filter.getValue().getItem2()));
-            }
-        }
-        return query;
-    }
-
-
     public PanacheEntityManager(Class<ENTITY> entityClass) {
         super();
         this.typeOfENTITY = entityClass;
-
-        List<Field> fields = Arrays.stream(typeOfENTITY.getDeclaredFields())
-                .collect(Collectors.toList());
-        fields.addAll(Arrays.asList(PanacheCustomEntity.class.getDeclaredFields()));
-
-        entityFields = new HashMap<>();
-        fields.forEach(f -> entityFields.put(f.getName(), f));
-
-        stringFields = fields.parallelStream()
-                .filter(f -> f.getType().getSimpleName().equals(String.class.getSimpleName()))
-                .map(f -> {
-                    String fieldName = "";
-                    if (f.isAnnotationPresent(Column.class)) {
-                        fieldName = f.getAnnotation(Column.class).name();
-                    }
-                    if (fieldName == null || fieldName.isBlank()) {
-                        fieldName = f.getName();
-                    }
-                    return fieldName;
-                })
-                .collect(Collectors.toList());
-
-        dataFields = fields.parallelStream()
-                .filter(f -> !f.getName().equalsIgnoreCase("id"))
-                .map(f -> {
-                    String fieldName = "";
-                    if (f.isAnnotationPresent(Column.class)) {
-                        fieldName = f.getAnnotation(Column.class).name();
-                    }
-                    if (fieldName == null || fieldName.isBlank()) {
-                        fieldName = f.getName();
-                    }
-                    return fieldName;
-                })
-                .collect(Collectors.toList());
-
-        entityBeanFields = fields.parallelStream()
-                .map(Field::getName)
-                .filter(name -> !name.equalsIgnoreCase("id"))
-                .collect(Collectors.toList());
-
+        this.metadata = EntityMetadata.of(typeOfENTITY);
+        this.entityFields = metadata.getEntityFields();
+        this.stringFields = metadata.getStringFields();
+        this.dataFields = metadata.getDataFields();
+        this.entityBeanFields = metadata.getEntityBeanFields();
+        this.queryPlans = new QueryPlanCache(metadata);
+        this.entityCache = new EntityCache<>(typeOfENTITY, metadata);
+        this.inputPipeline = new InputPipeline(metadata);
+        this.logicDispatch = new LogicDispatch(metadata);
+        this.projections = new ProjectionCache(metadata);
+        this.fetchPlan = new FetchPlan(metadata);
+        this.searchIndex = new SearchIndex(metadata);
     }
 
 
@@ -118,46 +102,18 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
                         .getSuperclass()
                         .getGenericSuperclass())
                         .getActualTypeArguments()[0];
-
-        List<Field> fields = Arrays.stream(typeOfENTITY.getDeclaredFields())
-                .collect(Collectors.toList());
-        fields.addAll(Arrays.asList(PanacheCustomEntity.class.getDeclaredFields()));
-
-        entityFields = new HashMap<>();
-        fields.forEach(f -> entityFields.put(f.getName(), f));
-
-        stringFields = fields.parallelStream()
-                .filter(f -> f.getType().getSimpleName().equals(String.class.getSimpleName()))
-                .map(f -> {
-                    String fieldName = "";
-                    if (f.isAnnotationPresent(Column.class)) {
-                        fieldName = f.getAnnotation(Column.class).name();
-                    }
-                    if (fieldName == null || fieldName.isBlank()) {
-                        fieldName = f.getName();
-                    }
-                    return fieldName;
-                })
-                .collect(Collectors.toList());
-
-        dataFields = fields.parallelStream()
-                .filter(f -> !f.getName().equalsIgnoreCase("id"))
-                .map(f -> {
-                    String fieldName = "";
-                    if (f.isAnnotationPresent(Column.class)) {
-                        fieldName = f.getAnnotation(Column.class).name();
-                    }
-                    if (fieldName == null || fieldName.isBlank()) {
-                        fieldName = f.getName();
-                    }
-                    return fieldName;
-                })
-                .collect(Collectors.toList());
-
-        entityBeanFields = fields.parallelStream()
-                .map(Field::getName)
-                .filter(name -> !name.equalsIgnoreCase("id"))
-                .collect(Collectors.toList());
+        this.metadata = EntityMetadata.of(typeOfENTITY);
+        this.entityFields = metadata.getEntityFields();
+        this.stringFields = metadata.getStringFields();
+        this.dataFields = metadata.getDataFields();
+        this.entityBeanFields = metadata.getEntityBeanFields();
+        this.queryPlans = new QueryPlanCache(metadata);
+        this.entityCache = new EntityCache<>(typeOfENTITY, metadata);
+        this.inputPipeline = new InputPipeline(metadata);
+        this.logicDispatch = new LogicDispatch(metadata);
+        this.projections = new ProjectionCache(metadata);
+        this.fetchPlan = new FetchPlan(metadata);
+        this.searchIndex = new SearchIndex(metadata);
     }
 
     public List<ENTITY> bulkSave(List<LinkedHashMap<String, Object>> input) throws CustomException {
@@ -165,23 +121,19 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public List<ENTITY> bulkSave(Stream<LinkedHashMap<String, Object>> input) throws CustomException{
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         List<ENTITY> entities = input.sequential()
                 .map(this::toENTITY)
-                .peek(e -> performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, e))
                 .collect(Collectors.toList());
+        performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, entities);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
             transaction.begin();
-            entities = entities.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.DURING_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            jpaContext.persist(entities);
-            jpaContext.flush(entities);
+            performChunkLogic(ExecutionPhase.DURING_TRANSACTION, entities);
+            persistInChunks(jpaContext, entities);
             transaction.commit();
-            entities = entities.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, e))
-                    .collect(Collectors.toList());
+            afterInsert(entities);
+            performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, entities);
             return entities;
         } catch (Exception e) {
             e.printStackTrace();
@@ -196,23 +148,114 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
         return null;
     }
 
+    public BulkReport bulkIngest(Stream<LinkedHashMap<String, Object>> input) throws CustomException {
+        return bulkIngest(input, false);
+    }
+
+    public BulkReport bulkIngest(Stream<LinkedHashMap<String, Object>> input, boolean itemResults) throws CustomException {
+        return bulkIngest(input,
+                ConfigProvider.getConfig().getOptionalValue("crudify.bulk.chunk-size", Integer.class).orElse(500),
+                ConfigProvider.getConfig().getOptionalValue("crudify.bulk.commit-per-chunk", Boolean.class).orElse(false),
+                itemResults);
+    }
+
+    public BulkReport bulkIngest(Stream<LinkedHashMap<String, Object>> input, int chunkSize, boolean commitPerChunk) throws CustomException {
+        return bulkIngest(input, chunkSize, commitPerChunk, false);
+    }
+
+    public BulkReport bulkIngest(Stream<LinkedHashMap<String, Object>> input, int chunkSize, boolean commitPerChunk, boolean itemResults) throws CustomException {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+        boolean afterLogic = logicDispatch.has(ExecutionPhase.AFTER_TRANSACTION);
+
+        BulkReport report = new BulkReport();
+        List<BulkReport.Chunk> uncommitted = new ArrayList<>();
+        List<Long> uncommittedIds = new ArrayList<>();
+        Iterator<LinkedHashMap<String, Object>> rows = input.sequential().iterator();
+        int index = 0;
+        int rowIndex = 0;
+        boolean open = false;
+        try {
+            while (rows.hasNext()) {
+                long start = System.nanoTime();
+                List<ENTITY> chunk = new ArrayList<>(chunkSize);
+                while (rows.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(toENTITY(rows.next()));
+                }
+                performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, chunk);
+                if (!open) {
+                    transaction.begin();
+                    open = true;
+                }
+                performChunkLogic(ExecutionPhase.DURING_TRANSACTION, chunk);
+                for (ENTITY entity : chunk) {
+                    entityManager.persist(entity);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                if (commitPerChunk) {
+                    transaction.commit();
+                    open = false;
+                    afterInsert(chunk);
+                    performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, chunk);
+                } else if (afterLogic) {
+                    chunk.forEach(e -> uncommittedIds.add(e.id));
+                }
+                if (itemResults) {
+                    for (ENTITY entity : chunk) {
+                        report.addItem(new BulkReport.Item(rowIndex++, entity.id, "created"));
+                    }
+                }
+                BulkReport.Chunk written = new BulkReport.Chunk(index++, chunk.size(), chunk.get(0).id, chunk.get(chunk.size() - 1).id,
+                        commitPerChunk, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                if (commitPerChunk) {
+                    report.add(written);
+                } else {
+                    uncommitted.add(written);
+                }
+                log.debug("Operation [{}]: bulk chunk {} of {} rows written", TransactionsEnvs.currentOperationId(), written.getIndex(), written.getSize());
+            }
+            if (open) {
+                transaction.commit();
+                open = false;
+                afterCommit(searchIndex::invalidate);
+                uncommitted.forEach(c -> report.add(new BulkReport.Chunk(c.getIndex(), c.getSize(), c.getFirstId(), c.getLastId(), true, c.getMillis())));
+                for (int i = 0; i < uncommittedIds.size(); i += chunkSize) {
+                    List<Long> ids = uncommittedIds.subList(i, Math.min(i + chunkSize, uncommittedIds.size()));
+                    performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, (List<ENTITY>) jpaContext.find(typeOfENTITY, "id in :ids", Map.of("ids", ids)).list());
+                    entityManager.clear();
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (open) {
+                try {
+                    transaction.rollback();
+                } catch (SystemException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            if (!commitPerChunk) {
+                CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
+            }
+            report.fail("Chunk " + index + " rolled back: " + (e instanceof CustomException ? ((CustomException) e).getParsedErrorMessage() : e.getMessage()));
+        }
+        return report;
+    }
+
     public List<ENTITY> saveAll(List<ENTITY> input) throws CustomException{
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        List<ENTITY> entities = input.stream()
-                .peek(e -> performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, e))
-                .collect(Collectors.toList());
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        List<ENTITY> entities = new ArrayList<>(input);
+        performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, entities);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
             transaction.begin();
-            entities = entities.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.DURING_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            jpaContext.persist(entities);
-            jpaContext.flush(entities);
+            performChunkLogic(ExecutionPhase.DURING_TRANSACTION, entities);
+            persistInChunks(jpaContext, entities);
             transaction.commit();
-            entities = entities.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, e))
-                    .collect(Collectors.toList());
+            afterInsert(entities);
+            performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, entities);
             return entities;
         } catch (Exception e) {
             e.printStackTrace();
@@ -227,8 +270,24 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
         return null;
     }
 
+    private void persistInChunks(JpaOperations jpaContext, List<ENTITY> entities) {
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        int chunkSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.chunk-size", Integer.class).orElse(500);
+        int pending = 0;
+        for (ENTITY entity : entities) {
+            entityManager.persist(entity);
+            if (++pending == chunkSize) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
     public ENTITY save(LinkedHashMap<String, Object> input) throws CustomException{
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         ENTITY entity = toENTITY(input);
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, entity);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
@@ -238,6 +297,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -255,7 +315,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
 
     public ENTITY save(ENTITY entity) throws CustomException{
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, entity);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
@@ -264,6 +324,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -310,7 +371,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 //    }
 
     public ENTITY update(Long id, ENTITY parsedInput) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInput);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
@@ -324,6 +385,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -340,7 +402,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public ENTITY update(Long id, LinkedHashMap<String, Object> input) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         ENTITY parsedInput = toENTITY(input);
         parsedInput.id = id;
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInput);
@@ -356,6 +418,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -372,7 +435,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public ENTITY rawUpdate(Long id, ENTITY parsedInput) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInput);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
@@ -386,6 +449,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -402,7 +466,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public ENTITY rawUpdate(Long id, LinkedHashMap<String, Object> input) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         ENTITY parsedInput = toENTITY(input);
         performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInput);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
@@ -417,6 +481,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(entity.id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return entity;
         } catch (Exception e) {
@@ -433,90 +498,99 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public List<ENTITY> bulkMerge(List<LinkedHashMap<String, Object>> input) throws CustomException {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
         List<ENTITY> parsedInputs = input.stream()
                 .map(this::toMergeENTITY)
-                .peek(e -> performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, e))
                 .collect(Collectors.toList());
+        performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInputs);
+        return mergeAll(parsedInputs);
+    }
 
+
+    public BulkReport bulkMerge(Stream<LinkedHashMap<String, Object>> input, boolean itemResults) throws CustomException {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        int chunkSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.chunk-size", Integer.class).orElse(500);
+        int idBatchSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.id-batch-size", Integer.class).orElse(1000);
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+
+        BulkReport report = new BulkReport();
+        List<Long> written = new ArrayList<>();
+        LongIndex<ENTITY> stored = new LongIndex<>(chunkSize);
+        Iterator<LinkedHashMap<String, Object>> rows = input.sequential().iterator();
+        int rowIndex = 0;
+        boolean open = false;
         try {
-            transaction.begin();
-            List<ENTITY> storedEntities = findAllByIds(parsedInputs.parallelStream().map(e -> e.id).collect(Collectors.toList()));
-            List<ENTITY> toSave = new ArrayList<>();
-            parsedInputs.stream()
-                .forEach(e -> {
-                    if(e.id != null){
-                        ENTITY stored = storedEntities.parallelStream()
-                                .filter(se -> Objects.equals(se.id, e.id))
-                                .findFirst()
-                                .get();
-                        stored.copy(e);
-                        toSave.add(stored);
-                    } else {
-                        toSave.add(e);
+            while (rows.hasNext()) {
+                List<ENTITY> chunk = new ArrayList<>(chunkSize);
+                while (rows.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(toMergeENTITY(rows.next()));
+                }
+                List<Boolean> updates = chunk.stream().map(e -> e.id != null).collect(Collectors.toList());
+                performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, chunk);
+                if (!open) {
+                    transaction.begin();
+                    open = true;
+                }
+                List<ENTITY> targets = mergeChunk(jpaContext, entityManager, chunk, idBatchSize, stored);
+                for (int i = 0; i < targets.size(); i++) {
+                    written.add(targets.get(i).id);
+                    if (itemResults) {
+                        report.addItem(new BulkReport.Item(rowIndex, targets.get(i).id, updates.get(i) ? "updated" : "created"));
                     }
-                });
-            List<ENTITY> finalToSave = toSave;
-            finalToSave = finalToSave.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.DURING_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            jpaContext.persist(finalToSave);
-            jpaContext.flush(finalToSave);
-            transaction.commit();
-            finalToSave = finalToSave.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            return finalToSave;
+                    rowIndex++;
+                }
+                report.add(targets.size());
+            }
+            if (open) {
+                transaction.commit();
+                open = false;
+                afterWrite(written);
+                if (logicDispatch.has(ExecutionPhase.AFTER_TRANSACTION)) {
+                    for (int i = 0; i < written.size(); i += chunkSize) {
+                        List<Long> ids = written.subList(i, Math.min(i + chunkSize, written.size()));
+                        performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, (List<ENTITY>) jpaContext.find(typeOfENTITY, "id in :ids", Map.of("ids", ids)).list());
+                        entityManager.clear();
+                    }
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
-            // do something on Tx failure
-            try {
-                transaction.rollback();
-            } catch (SystemException ex) {
-                ex.printStackTrace();
+            if (open) {
+                try {
+                    transaction.rollback();
+                } catch (SystemException ex) {
+                    ex.printStackTrace();
+                }
             }
             CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
         }
-        return null;
+        return report;
     }
 
-
     public List<ENTITY> merge(List<ENTITY> input) throws CustomException {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        List<ENTITY> parsedInputs = input.stream()
-                .peek(e -> performMethodLogic(ExecutionPhase.BEFORE_TRANSACTION, e))
-                .collect(Collectors.toList());
+        List<ENTITY> parsedInputs = new ArrayList<>(input);
+        performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, parsedInputs);
+        return mergeAll(parsedInputs);
+    }
+
+    private List<ENTITY> mergeAll(List<ENTITY> parsedInputs) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        int chunkSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.chunk-size", Integer.class).orElse(500);
+        int idBatchSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.id-batch-size", Integer.class).orElse(1000);
 
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
         try {
             transaction.begin();
-            List<ENTITY> storedEntities = findAllByIds(parsedInputs.parallelStream().map(e -> e.id).collect(Collectors.toList()));
-            List<ENTITY> toSave = new ArrayList<>();
-            parsedInputs.stream()
-                    .forEach(e -> {
-                        if(e.id != null){
-                            ENTITY stored = storedEntities.parallelStream()
-                                    .filter(se -> Objects.equals(se.id, e.id))
-                                    .findFirst()
-                                    .get();
-                            stored.copy(e);
-                            toSave.add(stored);
-                        } else {
-                            toSave.add(e);
-                        }
-                    });
-            List<ENTITY> finalToSave = toSave;
-            finalToSave = finalToSave.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.DURING_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            jpaContext.persist(finalToSave);
-            jpaContext.flush(finalToSave);
+            List<ENTITY> toSave = new ArrayList<>(parsedInputs.size());
+            LongIndex<ENTITY> stored = new LongIndex<>(chunkSize);
+            for (int from = 0; from < parsedInputs.size(); from += chunkSize) {
+                toSave.addAll(mergeChunk(jpaContext, entityManager, parsedInputs.subList(from, Math.min(from + chunkSize, parsedInputs.size())), idBatchSize, stored));
+            }
             transaction.commit();
-            finalToSave = finalToSave.stream()
-                    .peek(e -> performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, e))
-                    .collect(Collectors.toList());
-            return finalToSave;
+            afterWrite(toSave.stream().map(e -> e.id).collect(Collectors.toList()));
+            performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, toSave);
+            return toSave;
         } catch (Exception e) {
             e.printStackTrace();
             // do something on Tx failure
@@ -530,9 +604,50 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
         return null;
     }
 
+    private List<ENTITY> mergeChunk(JpaOperations jpaContext, EntityManager entityManager, List<ENTITY> chunk, int idBatchSize, LongIndex<ENTITY> stored) {
+        stored.clear();
+        loadStored(jpaContext, chunk, idBatchSize, stored);
+        List<ENTITY> targets = new ArrayList<>(chunk.size());
+        for (ENTITY e : chunk) {
+            ENTITY target = e;
+            if (e.id != null) {
+                target = stored.get(e.id);
+                if (target == null) {
+                    CustomException.get(CustomException.ErrorCode.NOT_FOUND, "{} {} not found", typeOfENTITY.getSimpleName(), e.id).boom();
+                }
+                target.copy(e);
+            }
+            targets.add(target);
+        }
+        performChunkLogic(ExecutionPhase.DURING_TRANSACTION, targets);
+        for (ENTITY target : targets) {
+            entityManager.persist(target);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return targets;
+    }
+
+    private void loadStored(JpaOperations jpaContext, List<ENTITY> chunk, int idBatchSize, LongIndex<ENTITY> stored) {
+        List<Long> ids = new ArrayList<>(Math.min(chunk.size(), idBatchSize));
+        for (int i = 0; i < chunk.size(); i++) {
+            Long id = chunk.get(i).id;
+            if (id != null) {
+                ids.add(id);
+            }
+            if (ids.size() == idBatchSize || (i == chunk.size() - 1 && !ids.isEmpty())) {
+                for (Object row : jpaContext.find(typeOfENTITY, "deleted = false and id in :ids", Map.of("ids", ids)).list()) {
+                    ENTITY entity = (ENTITY) row;
+                    stored.put(entity.id, entity);
+                }
+                ids = new ArrayList<>(Math.min(chunk.size(), idBatchSize));
+            }
+        }
+    }
+
     public boolean hardDelete(Long id) {
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         try {
             transaction.begin();
             ENTITY entity = findGeneralById(id);
@@ -543,6 +658,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.delete(entity);
             jpaContext.flush();
             transaction.commit();
+            afterWrite(id);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -559,7 +675,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
     public boolean softDelete(Long id) {
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         try {
             transaction.begin();
             ENTITY entity = findByIdNoLogic(id);
@@ -571,6 +687,7 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
             jpaContext.persist(entity);
             jpaContext.flush(entity);
             transaction.commit();
+            afterWrite(id);
             performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
             return true;
         } catch (Exception e) {
@@ -587,15 +704,162 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
 
+    public BulkReport bulkDelete(List<Long> ids, boolean hard) throws CustomException {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        int chunkSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.chunk-size", Integer.class).orElse(500);
+        String query = hard ? "id in :ids" : "deleted = false and id in :ids";
+
+        BulkReport report = new BulkReport();
+        List<Long> unique = new ArrayList<>(ids.size());
+        List<Integer> positions = new ArrayList<>(ids.size());
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id == null) {
+                report.addItem(new BulkReport.Item(i, null, "invalid"));
+            } else if (!seen.add(id)) {
+                report.addItem(new BulkReport.Item(i, id, "duplicate"));
+            } else {
+                unique.add(id);
+                positions.add(i);
+            }
+        }
+        List<ENTITY> softDeleted = new ArrayList<>();
+        UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+        try {
+            transaction.begin();
+            LongIndex<ENTITY> stored = new LongIndex<>(chunkSize);
+            for (int from = 0; from < unique.size(); from += chunkSize) {
+                List<Long> chunk = unique.subList(from, Math.min(from + chunkSize, unique.size()));
+                stored.clear();
+                for (Object row : jpaContext.find(typeOfENTITY, query, Map.of("ids", chunk)).list()) {
+                    stored.put(((ENTITY) row).id, (ENTITY) row);
+                }
+                List<ENTITY> found = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    ENTITY entity = stored.get(chunk.get(i));
+                    if (entity == null) {
+                        report.addItem(new BulkReport.Item(positions.get(from + i), chunk.get(i), "not_found"));
+                        continue;
+                    }
+                    found.add(entity);
+                    report.addItem(new BulkReport.Item(positions.get(from + i), entity.id, "deleted"));
+                    report.add(1);
+                }
+                performChunkLogic(ExecutionPhase.BEFORE_TRANSACTION, found);
+                if (!hard) {
+                    found.forEach(entity -> entity.deleted = true);
+                }
+                performChunkLogic(ExecutionPhase.DURING_TRANSACTION, found);
+                if (hard) {
+                    found.forEach(entityManager::remove);
+                } else {
+                    softDeleted.addAll(found);
+                }
+                entityManager.flush();
+            }
+            transaction.commit();
+            afterWrite(unique);
+            performChunkLogic(ExecutionPhase.AFTER_TRANSACTION, softDeleted);
+            return report;
+        } catch (Exception e) {
+            e.printStackTrace();
+            // do something on Tx failure
+            try {
+                transaction.rollback();
+            } catch (SystemException ex) {
+                ex.printStackTrace();
+            }
+            CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
+        }
+        return null;
+    }
+
+    public long bulkDeleteWhere(Map<String, Tuple2<String, String>> filters, boolean hard) throws CustomException {
+        if (filters.isEmpty()) {
+            CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Bulk delete needs at least one condition").boom();
+        }
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(hard ? FindAllSelectionType.ALL : FindAllSelectionType.STANDART, "", filters);
+        Map<String, Object> params = plan.bind("", filters);
+        UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+        try {
+            transaction.begin();
+            long deleted = hard
+                    ? jpaContext.delete(typeOfENTITY, plan.getQuery(), params)
+                    : jpaContext.update(typeOfENTITY, "deleted = true where " + plan.getQuery(), params);
+            transaction.commit();
+            afterWriteAll();
+            return deleted;
+        } catch (Exception e) {
+            e.printStackTrace();
+            // do something on Tx failure
+            try {
+                transaction.rollback();
+            } catch (SystemException ex) {
+                ex.printStackTrace();
+            }
+            CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
+        }
+        return 0;
+    }
+
+    private void afterWrite(Long id) {
+        afterCommit(() -> {
+            entityCache.invalidate(id);
+            searchIndex.changed(id);
+        });
+    }
+
+    private void afterWrite(Iterable<Long> ids) {
+        afterCommit(() -> {
+            List<Long> written = new ArrayList<>();
+            for (Long id : ids) {
+                if (id != null) {
+                    written.add(id);
+                }
+            }
+            entityCache.invalidate(written);
+            searchIndex.changed(written);
+        });
+    }
+
+    private void afterWriteAll() {
+        afterCommit(() -> {
+            entityCache.invalidateAll();
+            searchIndex.invalidate();
+        });
+    }
+
+    private void afterInsert(List<ENTITY> entities) {
+        afterCommit(() -> {
+            for (ENTITY entity : entities) {
+                searchIndex.changed(entity.id);
+            }
+        });
+    }
+
+    //NOTE the version is bumped whatever happens, a stale cached response is worse than a miss
+    private void afterCommit(Runnable invalidation) {
+        try {
+            invalidation.run();
+        } catch (RuntimeException e) {
+            log.warn("Operation [{}]: cache invalidation of {} failed", TransactionsEnvs.currentOperationId(), typeOfENTITY.getSimpleName(), e);
+        } finally {
+            EntityVersions.bump(typeOfENTITY);
+        }
+    }
+
     public ENTITY findByCondition(String query, Map<String, Object> params) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         ENTITY entity = (ENTITY) jpaContext.find(typeOfENTITY, query, params).firstResult();
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
         return entity;
     }
 
     public List<ENTITY> findAllByCondition(String query, Map<String, Object> params) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         List<ENTITY> entities = (List<ENTITY>) jpaContext.find(typeOfENTITY, query, params).list();
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entities);
         return entities;
@@ -603,11 +867,12 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
     public long hardDeleteAllByCondition(String query, Map<String, Object> params) {
         UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         try {
             transaction.begin();
             long deletedEntities = jpaContext.delete(typeOfENTITY, query, params);
             transaction.commit();
+            afterWriteAll();
             return deletedEntities;
         } catch (Exception e) {
             e.printStackTrace();
@@ -623,143 +888,321 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
     }
 
     public ENTITY findGeneralById(Long id) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        ENTITY entity = (ENTITY) jpaContext.find(typeOfENTITY, "id = :id", Map.of("id", id)).firstResult();
+        ENTITY entity = entityCache.isEnabled()
+                ? entityCache.get(id, this::loadGeneralById)
+                : loadGeneralById(id);
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
         return entity;
     }
 
     public ENTITY findById(Long id) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        ENTITY entity =  (ENTITY) jpaContext.find(typeOfENTITY, "deleted = false and id = :id", Map.of("id", id)).firstResult();
+        ENTITY entity;
+        if (entityCache.isEnabled()) {
+            entity = entityCache.get(id, this::loadGeneralById);
+            entity = entity == null || entity.deleted ? null : entity;
+        } else {
+            JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+            entity = (ENTITY) jpaContext.find(typeOfENTITY, "deleted = false and id = :id", Map.of("id", id)).firstResult();
+        }
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
         return entity;
     }
 
+    private ENTITY loadGeneralById(Long id) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        return (ENTITY) jpaContext.find(typeOfENTITY, "id = :id", Map.of("id", id)).firstResult();
+    }
+
     public ENTITY findByIdNoLogic(Long id) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         ENTITY entity =  (ENTITY) jpaContext.find(typeOfENTITY, "deleted = false and id = :id", Map.of("id", id)).firstResult();
         return entity;
     }
 
     public List<ENTITY> findAllByIds(List<Long> ids) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
         List<ENTITY> entities = (List<ENTITY>) jpaContext.find(typeOfENTITY, "deleted = false and id in :ids", Map.of("ids", ids)).list();
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entities);
         return entities;
     }
 
     public ENTITY findArchivedById(Long id) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        ENTITY entity =  (ENTITY) jpaContext.find(typeOfENTITY, "deleted = true and id = :id", Map.of("id", id)).firstResult();
+        ENTITY entity;
+        if (entityCache.isEnabled()) {
+            entity = entityCache.get(id, this::loadGeneralById);
+            entity = entity == null || !entity.deleted ? null : entity;
+        } else {
+            JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+            entity = (ENTITY) jpaContext.find(typeOfENTITY, "deleted = true and id = :id", Map.of("id", id)).firstResult();
+        }
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
         return entity;
     }
 
     public List<ENTITY> findAllGeneral(Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "(:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+        return findAll(FindAllSelectionType.ALL, filters, search, page, size, sort);
+    }
 
-        query = parseFilters(query, filterParams, filters);
+    public List<ENTITY> findAll(Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
+        return findAll(FindAllSelectionType.STANDART, filters, search, page, size, sort);
+    }
 
-        List<ENTITY> result = (List<ENTITY>) jpaContext.find(typeOfENTITY, query, SortInput.getSortOrDefault(sort), filterParams).page(Page.of(page, size)).list();
+    public List<ENTITY> findAllArchived(Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
+        return findAll(FindAllSelectionType.ARCHIVED, filters, search, page, size, sort);
+    }
+
+    public List<ENTITY> findAll(FindAllSelectionType selectionType, Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        List<Long> hits = searchHits(jpaContext, search);
+        List<Long> ranked = isRanked(hits, sort) ? rankedIds(jpaContext, selectionType, search, hits, filters) : null;
+
+        List<ENTITY> result;
+        if (ranked != null) {
+            result = loadRanked(jpaContext, ranked.subList(Math.min(page * size, ranked.size()), Math.min(page * size + size, ranked.size())));
+        } else {
+            hits = searchIndex.bounded(hits);
+            QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, hits != null);
+            result = (List<ENTITY>) jpaContext.find(typeOfENTITY, plan.getQuery(), SortInput.getSortOrDefault(sort), plan.bind(search, hits, filters)).page(Page.of(page, size)).list();
+        }
+        loadRelations(jpaContext, result);
         performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, result);
         return result;
     }
 
-    public List<ENTITY> findAll(Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = false and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+    //NOTE ESTIMATE reuses a recent count, NONE reads one extra row to tell if a next page exists
+    public Map<String, Object> findPage(FindAllSelectionType selectionType, CountMode countMode, Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        List<Long> hits = searchHits(jpaContext, search);
+        List<Long> ranked = isRanked(hits, sort) ? rankedIds(jpaContext, selectionType, search, hits, filters) : null;
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        if (ranked != null) {
+            int from = Math.min(page * size, ranked.size());
+            int to = Math.min(from + size, ranked.size());
+            res.put("data", rowsOf(null, loadRanked(jpaContext, ranked.subList(from, to))));
+            if (countMode == CountMode.NONE) {
+                res.put("hasNext", to < ranked.size());
+            } else {
+                res.put("pages", getPagesCount(ranked.size(), size));
+            }
+            return res;
+        }
+        hits = searchIndex.bounded(hits);
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, hits != null);
+        String query = plan.getQuery();
+        Map<String, Object> filterParams = plan.bind(search, hits, filters);
+        ProjectionCache.Projection projection = projection();
+        String pageQuery = projection == null ? query : projection.select(query);
+
+        switch (countMode) {
+            case NONE: {
+                List<?> result = jpaContext.find(typeOfENTITY, pageQuery, SortInput.getSortOrDefault(sort), filterParams).range(page * size, page * size + size).list();
+                boolean hasNext = result.size() > size;
+                if (hasNext) {
+                    result = new ArrayList<>(result.subList(0, size));
+                }
+                res.put("data", rowsOf(projection, result));
+                res.put("hasNext", hasNext);
+                break;
+            }
+            case ESTIMATE: {
+                List<?> result = jpaContext.find(typeOfENTITY, pageQuery, SortInput.getSortOrDefault(sort), filterParams).page(Page.of(page, size)).list();
+                res.put("data", rowsOf(projection, result));
+                res.put("pages", getPagesCount(counter().estimate(typeOfENTITY, query, filterParams), size));
+                break;
+            }
+            case EXACT:
+            default: {
+                CrudifyCounter.PendingCount count = counter().countConcurrently(typeOfENTITY, query, filterParams);
+                List<?> result = jpaContext.find(typeOfENTITY, pageQuery, SortInput.getSortOrDefault(sort), filterParams).page(Page.of(page, size)).list();
+                res.put("data", rowsOf(projection, result));
+                res.put("pages", getPagesCount(count.join(), size));
+            }
+        }
+        return res;
+    }
 
-        query = parseFilters(query, filterParams, filters);
+    private ProjectionCache.Projection projection() {
+        if (logicDispatch.has(ExecutionPhase.AFTER_TRANSACTION)) {
+            return null;
+        }
+        return projections.projection(TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.RESPONSE_FIELD), TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.EXPAND));
+    }
 
-        List<ENTITY> result = (List<ENTITY>) jpaContext.find(typeOfENTITY, query, SortInput.getSortOrDefault(sort), filterParams).page(Page.of(page, size)).list();
-        performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, result);
-        return result;
+    private List<Long> searchHits(JpaOperations jpaContext, String search) {
+        if (!searchIndex.accepts(search)) {
+            return null;
+        }
+        return searchIndex.search(jpaContext.getEntityManager(typeOfENTITY), search);
     }
 
-    public List<ENTITY> findAllArchived(Map<String, Tuple2<String, String>> filters, String search, int page, int size, SortInput sort) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = true and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+    private static boolean isRanked(List<Long> hits, SortInput sort) {
+        return hits != null && (hits.isEmpty() || sort == null || sort.by == null || sort.by.length == 0);
+    }
 
-        query = parseFilters(query, filterParams, filters);
+    private List<Long> rankedIds(JpaOperations jpaContext, FindAllSelectionType selectionType, String search, List<Long> hits, Map<String, Tuple2<String, String>> filters) {
+        int maxHits = searchIndex.getMaxHits();
+        int batchSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.id-batch-size", Integer.class).orElse(1000);
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, true);
+        String query = "select id from " + searchIndex.getEntityName() + " where " + plan.getQuery();
+        List<Long> ranked = new ArrayList<>(Math.min(hits.size(), maxHits));
+        for (int from = 0; from < hits.size(); from += batchSize) {
+            List<Long> batch = hits.subList(from, Math.min(hits.size(), from + batchSize));
+            Set<Long> matching = new HashSet<>((List<Long>) jpaContext.find(typeOfENTITY, query, plan.bind(search, batch, filters)).list());
+            for (Long id : batch) {
+                if (matching.contains(id)) {
+                    if (ranked.size() == maxHits) {
+                        return null;
+                    }
+                    ranked.add(id);
+                }
+            }
+        }
+        return ranked;
+    }
 
-        List<ENTITY> result = (List<ENTITY>) jpaContext.find(typeOfENTITY, query, SortInput.getSortOrDefault(sort), filterParams).page(Page.of(page, size)).list();
-        performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, result);
+    private List<ENTITY> loadRanked(JpaOperations jpaContext, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        LongIndex<ENTITY> byId = new LongIndex<>(ids.size());
+        for (Object row : jpaContext.find(typeOfENTITY, "id in :ids", Map.of("ids", ids)).list()) {
+            ENTITY entity = (ENTITY) row;
+            byId.put(entity.id, entity);
+        }
+        List<ENTITY> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ENTITY entity = byId.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
         return result;
     }
 
-    public long countAll(Map<String, Tuple2<String, String>> filters, String search) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = false and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+    private void loadRelations(JpaOperations jpaContext, List<?> result) {
+        fetchPlan.load(jpaContext.getEntityManager(typeOfENTITY), (List<ENTITY>) result,
+                TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.RESPONSE_FIELD), TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.EXPAND));
+    }
 
-        query = parseFilters(query, filterParams, filters);
+    private List<?> rowsOf(ProjectionCache.Projection projection, List<?> result) {
+        if (projection == null) {
+            loadRelations(TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT), result);
+            performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, result);
+            return result;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(result.size());
+        for (Object row : result) {
+            rows.add(projection.row(row));
+        }
+        return rows;
+    }
+
+    public List<ENTITY> findAllAfter(FindAllSelectionType selectionType, Map<String, Tuple2<String, String>> filters, String search, int size, SortInput sort, KeysetCursor after) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        List<Long> hits = searchIndex.bounded(searchHits(jpaContext, search));
+        if (hits != null && hits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, hits != null);
+        String query = plan.getQuery();
+        Map<String, Object> filterParams = plan.bind(search, hits, filters);
+        if (after != null) {
+            query = after.appendPredicate(query, metadata, sort, filterParams);
+        }
 
-        return jpaContext.count(typeOfENTITY, query, filterParams);
+        List<ENTITY> result = (List<ENTITY>) jpaContext.find(typeOfENTITY, query, KeysetCursor.sortOf(sort), filterParams).page(Page.ofSize(size)).list();
+        loadRelations(jpaContext, result);
+        performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, result);
+        return result;
     }
 
-    public long countAllArchived(Map<String, Tuple2<String, String>> filters, String search) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = true and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+    //NOTE in a transaction because drivers such as PostgreSQL only honour the fetch size with autocommit off
+    public long streamAll(FindAllSelectionType selectionType, Map<String, Tuple2<String, String>> filters, String search, SortInput sort, int fetchSize, CrudifyFramework.RowSink sink) throws Exception {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        EntityManager entityManager = jpaContext.getEntityManager(typeOfENTITY);
+        List<Long> hits = searchIndex.bounded(searchHits(jpaContext, search));
+        if (hits != null && hits.isEmpty()) {
+            return 0;
+        }
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, hits != null);
+        ProjectionCache.Projection projection = projection();
 
-        query = parseFilters(query, filterParams, filters);
+        UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+        transaction.setTransactionTimeout(ConfigProvider.getConfig().getOptionalValue("crudify.stream.transaction-timeout-seconds", Integer.class).orElse(3600));
+        transaction.begin();
+        long count = 0;
+        String query = projection == null ? plan.getQuery() : projection.select(plan.getQuery());
+        try (Stream<?> rows = jpaContext.find(typeOfENTITY, query, SortInput.getSortOrDefault(sort), plan.bind(search, hits, filters))
+                .withHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .withHint(QueryHints.HINT_READONLY, true)
+                .stream()) {
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                if (projection != null) {
+                    sink.accept(projection.row(iterator.next()));
+                } else {
+                    ENTITY entity = (ENTITY) iterator.next();
+                    performMethodLogic(ExecutionPhase.AFTER_TRANSACTION, entity);
+                    sink.accept(entity);
+                }
+                if (++count % fetchSize == 0) {
+                    entityManager.clear();
+                }
+            }
+        } finally {
+            transaction.rollback();
+            transaction.setTransactionTimeout(0);
+        }
+        return count;
+    }
 
-        return jpaContext.count(typeOfENTITY, query, filterParams);
+    public String nextCursor(List<ENTITY> page, int size, SortInput sort) {
+        if (page.isEmpty() || page.size() < size) {
+            return null;
+        }
+        return KeysetCursor.encode(metadata, sort, page.get(page.size() - 1));
     }
 
-    public long countAllGeneral(Map<String, Tuple2<String, String>> filters, String search) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "(:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
+    public long countAll(Map<String, Tuple2<String, String>> filters, String search) {
+        return count(FindAllSelectionType.STANDART, filters, search);
+    }
 
-        query = parseFilters(query, filterParams, filters);
+    public long countAllArchived(Map<String, Tuple2<String, String>> filters, String search) {
+        return count(FindAllSelectionType.ARCHIVED, filters, search);
+    }
 
-        return jpaContext.count(typeOfENTITY, query, filterParams);
+    public long countAllGeneral(Map<String, Tuple2<String, String>> filters, String search) {
+        return count(FindAllSelectionType.ALL, filters, search);
     }
 
+    public long count(FindAllSelectionType selectionType, Map<String, Tuple2<String, String>> filters, String search) {
+        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.JPA_CONTEXT);
+        List<Long> hits = searchIndex.bounded(searchHits(jpaContext, search));
+        if (hits != null && hits.isEmpty()) {
+            return 0;
+        }
+        QueryPlanCache.QueryPlan plan = queryPlans.plan(selectionType, search, filters, hits != null);
+        return jpaContext.count(typeOfENTITY, plan.getQuery(), plan.bind(search, hits, filters));
+    }
 
     public int countAllPages(Map<String, Tuple2<String, String>> filters, String search, int size) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = false and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
-
-        query = parseFilters(query, filterParams, filters);
-
-        return getPagesCount(jpaContext.count(typeOfENTITY, query, filterParams), size);
+        return getPagesCount(countAll(filters, search), size);
     }
 
     public int countAllArchivedPages(Map<String, Tuple2<String, String>> filters, String search, int size) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "deleted = true and (:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
-
-        query = parseFilters(query, filterParams, filters);
-
-        return getPagesCount(jpaContext.count(typeOfENTITY, query, filterParams), size);
+        return getPagesCount(countAllArchived(filters, search), size);
     }
 
     public int countAllGeneralPages(Map<String, Tuple2<String, String>> filters, String search, int size) {
-        JpaOperations jpaContext = TransactionsEnvs.pullProp(TransactionsEnvs.JPA_CONTEXT);
-        String query = "(:search = '' " + getSearchQueryParams() + ")";
-        Map<String, Object> filterParams = new HashMap<>();
-        filterParams.put("search", search.isBlank() ? "" : ("%" + search + "%"));
-
-        query = parseFilters(query, filterParams, filters);
+        return getPagesCount(countAllGeneral(filters, search), size);
+    }
 
-        return getPagesCount(jpaContext.count(typeOfENTITY, query, filterParams), size);
+    private static CrudifyCounter counter() {
+        if (counter == null) {
+            counter = CDI.current().select(CrudifyCounter.class).get();
+        }
+        return counter;
     }
 
     public int getPagesCount(long count, double size) {
@@ -768,97 +1211,21 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
 
     public ENTITY toMergeENTITY(LinkedHashMap<String, Object> input) {
-        try {
-
-            log.debug("Operation [{}]: Parsing input : {}", Thread.currentThread().getThreadGroup().getName(), input);
-
-            String method = TransactionsEnvs.pullProp(TransactionsEnvs.HTTP_METHOD);
-            ENTITY res = typeOfENTITY.getDeclaredConstructor().newInstance();
-
-            for (Map.Entry<String, Field> fieldStruct : entityFields.entrySet()) {
-                Field f = fieldStruct.getValue();
-                if (f.getName().equals("id")
-                        || !f.isAnnotationPresent(IgnoreInput.class)
-                        || (f.getAnnotation(IgnoreInput.class).when().length > 0 &&
-                                !List.of(f.getAnnotation(IgnoreInput.class).when()).contains(method))) {
-
-                    AtomicReference<Object> value = new AtomicReference<>(input.get(fieldStruct.getKey()));
-                    if (f.isAnnotationPresent(BuildInput.class) || f.isAnnotationPresent(BuildInputs.class)) {
-                        Stream.of(f.getAnnotationsByType(BuildInput.class))
-                                .filter(bi -> bi.onMethods().length == 0 || List.of(bi.onMethods()).contains(method))
-                                .forEach(bi -> value.set(CDI.current().select(bi.value()).get().build(value.get())));
-                    }
-
-                    if (f.trySetAccessible()) {
-                        Object valueData = value.get();
-                        if (valueData != null) {
-                            //This check is due to an IllegalArgumentException laucnhed on Long casting I don't know why
-                            if(f.getType().equals(Long.class) && !(valueData instanceof Long)){
-                                f.set(res, Long.valueOf(String.valueOf(valueData)));
-                            } else if(f.getType().isEnum()) {
-                                f.set(res, Enum.valueOf((Class<Enum>) f.getType(), String.valueOf(valueData)));
-                            } else {
-                                f.set(res, valueData);
-                            }
-                        } else {
-                            log.warn("Operation [{}]: Field {} setted to null", Thread.currentThread().getThreadGroup().getName(), fieldStruct.getKey());
-                        }
-                    } else if(value.get() != null){
-                        CustomException.get(CustomException.ErrorCode.INTERNAL, "Cannot access field {}", f.getName()).boom();
-                    }
-                }
-            }
-
-            return res;
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                 NoSuchMethodException e) {
-            e.printStackTrace();
-            CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
-        }
-        return null;
+        return bindInput(input, true);
     }
 
     public ENTITY toENTITY(LinkedHashMap<String, Object> input) {
+        return bindInput(input, false);
+    }
+
+    private ENTITY bindInput(LinkedHashMap<String, Object> input, boolean merging) {
         try {
 
-            log.debug("Operation [{}]: Parsing input : {}", Thread.currentThread().getThreadGroup().getName(), input);
+            log.debug("Operation [{}]: Parsing input : {}", TransactionsEnvs.currentOperationId(), input);
 
-            String method = TransactionsEnvs.pullProp(TransactionsEnvs.HTTP_METHOD);
+            String method = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.HTTP_METHOD);
             ENTITY res = typeOfENTITY.getDeclaredConstructor().newInstance();
-
-            for (Map.Entry<String, Field> fieldStruct : entityFields.entrySet()) {
-                Field f = fieldStruct.getValue();
-                if (!f.isAnnotationPresent(IgnoreInput.class) ||
-                        (f.getAnnotation(IgnoreInput.class).when().length > 0 &&
-                                !List.of(f.getAnnotation(IgnoreInput.class).when()).contains(method))) {
-
-                    AtomicReference<Object> value = new AtomicReference<>(input.get(fieldStruct.getKey()));
-                    if (f.isAnnotationPresent(BuildInput.class) || f.isAnnotationPresent(BuildInputs.class)) {
-                        Stream.of(f.getAnnotationsByType(BuildInput.class))
-                                .filter(bi -> bi.onMethods().length == 0 || List.of(bi.onMethods()).contains(method))
-                                .forEach(bi -> value.set(CDI.current().select(bi.value()).get().build(value.get())));
-                    }
-
-                    if (f.trySetAccessible()) {
-                        Object valueData = value.get();
-                        if (valueData != null) {
-                            //This check is due to an IllegalArgumentException laucnhed on Long casting I don't know why
-                            if(f.getType().equals(Long.class) && !(valueData instanceof Long)){
-                                f.set(res, Long.valueOf(String.valueOf(valueData)));
-                            } else if(f.getType().isEnum()) {
-                                f.set(res, Enum.valueOf((Class<Enum>) f.getType(), String.valueOf(valueData)));
-                            } else {
-                                f.set(res, valueData);
-                            }
-                        } else {
-                            log.warn("Operation [{}]: Field {} setted to null", Thread.currentThread().getThreadGroup().getName(), fieldStruct.getKey());
-                        }
-                    } else if(value.get() != null){
-                        CustomException.get(CustomException.ErrorCode.INTERNAL, "Cannot access field {}", f.getName()).boom();
-                    }
-                }
-            }
-
+            inputPipeline.bind(res, input, method, merging);
             return res;
         } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
                  NoSuchMethodException e) {
@@ -870,13 +1237,31 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
 
     public <R> void performMethodLogic(ExecutionPhase executionPhase, R entity) {
-        RoutingContext ctx = TransactionsEnvs.pullProp(TransactionsEnvs.CONTEXT);
-        String method = TransactionsEnvs.pullProp(TransactionsEnvs.HTTP_METHOD);
+        if (!logicDispatch.has(executionPhase)) {
+            return;
+        }
+        RoutingContext ctx = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.CONTEXT);
+        String method = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.HTTP_METHOD);
         if(ctx != null) {
-            if (typeOfENTITY.isAnnotationPresent(CrudLogic.class) || typeOfENTITY.isAnnotationPresent(CrudLogics.class)) {
-                for (CrudLogic cl : typeOfENTITY.getAnnotationsByType(CrudLogic.class)) {
-                    if (executionPhase.equals(cl.executionPhase()) && (cl.onMethods().length == 0 || List.of(cl.onMethods()).contains(method))) {
-                        CDI.current().select(cl.value()).get().supply(ctx, entity);
+            for (LogicSupplier supplier : logicDispatch.of(executionPhase, method)) {
+                supplier.supply(ctx, entity);
+            }
+        }
+    }
+
+    public void performChunkLogic(ExecutionPhase executionPhase, List<ENTITY> chunk) {
+        if (chunk.isEmpty() || !logicDispatch.has(executionPhase)) {
+            return;
+        }
+        RoutingContext ctx = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.CONTEXT);
+        String method = TransactionsEnvs.pullProp(TransactionsEnvs.EnvKey.HTTP_METHOD);
+        if(ctx != null) {
+            for (LogicSupplier supplier : logicDispatch.of(executionPhase, method)) {
+                if (supplier instanceof BatchLogicSupplier) {
+                    ((BatchLogicSupplier) supplier).supplyAll(ctx, chunk);
+                } else {
+                    for (ENTITY entity : chunk) {
+                        supplier.supply(ctx, entity);
                     }
                 }
             }
@@ -886,41 +1271,32 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 
 
     public <R> Object performCrudAndBuildObjectResponse(Supplier<R> crud) {
-        RoutingExchange ex = TransactionsEnvs.pullProp(TransactionsEnvs.REQUEST_CONTEXT);
-
         try {
             R crudResult = crud.get();
             if (crudResult != null) {
                 return crudResult;
             } else {
-                ex.response().setStatusCode(Response.Status.NOT_FOUND.getStatusCode());
-                ex.response().setStatusMessage("No Result");
-                return "No Result";
+                return CrudifyFramework.status(Response.Status.NOT_FOUND.getStatusCode(), "No Result", "No Result");
             }
         } catch (CustomException e) {
-            ex.response().setStatusCode(e.getErrorCode().code);
-            ex.response().setStatusMessage(e.getParsedErrorMessage());
-            return e.getExtensions();
+            return CrudifyFramework.failure(e);
         }
     }
 
     public <R extends Tuple2<List<PanacheCustomEntity>, Integer>> Object performCrudAndBuildListResponse(Supplier<R> crud) {
 
-        RoutingExchange ex = TransactionsEnvs.pullProp(TransactionsEnvs.REQUEST_CONTEXT);
-
         try {
             R crudResult = crud.get();
             if (crudResult != null) {
-                return PanacheCustomEntity.toJson(crudResult.getItem1(), crudResult.getItem2());
+                Map<String, Object> res = new LinkedHashMap<>();
+                res.put("data", crudResult.getItem1());
+                res.put("pages", crudResult.getItem2());
+                return res;
             } else {
-                ex.response().setStatusCode(Response.Status.NOT_FOUND.getStatusCode());
-                ex.response().setStatusMessage("No Result");
-                return "No Result";
+                return CrudifyFramework.status(Response.Status.NOT_FOUND.getStatusCode(), "No Result", "No Result");
             }
         } catch (CustomException e) {
-            ex.response().setStatusCode(e.getErrorCode().code);
-            ex.response().setStatusMessage(e.getParsedErrorMessage());
-            return e.getExtensions();
+            return CrudifyFramework.failure(e);
         }
     }
 
@@ -964,26 +1340,11 @@ public class PanacheEntityManager<ENTITY extends PanacheCustomEntity> {
 //    }
 
     public Object getFilterParamParsed(String paramName, String data){
-        try {
-
-        switch (typeOfENTITY.getDeclaredField(paramName).getType().getSimpleName()){
-            case "Long":
-                return Long.parseLong(data);
-            case "Integer":
-                return Integer.parseInt(data);
-            case "Boolean":
-                return Boolean.parseBoolean(data);
-            case "Double":
-                return Double.parseDouble(data);
-            case "Float":
-                return Float.parseFloat(data);
-            default:
-                return data;
-        }
-        } catch (NoSuchFieldException e) {
-            CustomException.get(CustomException.ErrorCode.BAD_REQUEST, e).boom();
+        EntityMetadata.FieldMetadata field = metadata.getEntityField(paramName);
+        if (field == null) {
+            EntityMetadata.unknownField(typeOfENTITY, paramName).boom();
         }
-        return null;
+        return field.toFilterValue(data);
     }
 
 }
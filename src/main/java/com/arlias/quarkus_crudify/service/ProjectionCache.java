@@ -0,0 +1,137 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.model.common.PanacheCustomEntity;
+
+import javax.persistence.Entity;
+import javax.persistence.Transient;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ProjectionCache {
+
+    private static final int MAX_PROJECTIONS = 1024;
+
+    private static final Projection NOT_PROJECTABLE = new Projection(null, null, List.of(), List.of());
+
+    private static final LongAdder projected = new LongAdder();
+
+    private final EntityMetadata metadata;
+
+    private final String entityName;
+
+    private final Map<List<List<String>>, Projection> projections = new ConcurrentHashMap<>();
+
+    public ProjectionCache(EntityMetadata metadata) {
+        this.metadata = metadata;
+        Entity entity = metadata.getType().getAnnotation(Entity.class);
+        this.entityName = entity == null || entity.name().isBlank() ? metadata.getType().getSimpleName() : entity.name();
+    }
+
+    public Projection projection(List<String> resFields, List<String> expand) {
+        if (resFields == null || resFields.isEmpty()) {
+            return null;
+        }
+        Projection projection = projections.get(Arrays.asList(resFields, expand));
+        if (projection == null) {
+            projection = compile(resFields, expand);
+            if (projections.size() < MAX_PROJECTIONS) {
+                projections.putIfAbsent(Arrays.asList(List.copyOf(resFields), expand == null ? null : List.copyOf(expand)), projection);
+            }
+        }
+        if (projection == NOT_PROJECTABLE) {
+            return null;
+        }
+        projected.increment();
+        return projection;
+    }
+
+    public static Map<String, Object> getStats() {
+        return Map.of("projected", projected.sum());
+    }
+
+    private Projection compile(List<String> resFields, List<String> expand) {
+        List<String> names = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        for (EntityMetadata.PropertyMetadata p : metadata.getProperties()) {
+            if (!p.isAccessible()) {
+                continue;
+            }
+            if (p.getKind() != EntityMetadata.PropertyKind.VALUE) {
+                if (!resFields.contains(p.getName()) && metadata.isExpanded(p.getName(), expand)) {
+                    return NOT_PROJECTABLE;
+                }
+                continue;
+            }
+            if (!resFields.contains(p.getName())) {
+                continue;
+            }
+            if (p.getName().equals("metaType")) {
+                names.add(p.getName());
+                columns.add(null);
+                continue;
+            }
+            EntityMetadata.FieldMetadata field = metadata.getEntityField(p.getName());
+            if (field == null || !isPersistent(field)) {
+                return NOT_PROJECTABLE;
+            }
+            names.add(p.getName());
+            columns.add(field.getName());
+        }
+        if (columns.stream().allMatch(Objects::isNull)) {
+            return NOT_PROJECTABLE;
+        }
+        return new Projection(entityName, metadata.getType().getSimpleName(), names, columns);
+    }
+
+    private static boolean isPersistent(EntityMetadata.FieldMetadata field) {
+        int modifiers = field.getField().getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.getField().isAnnotationPresent(Transient.class)
+                && !PanacheCustomEntity.class.isAssignableFrom(field.getField().getType())
+                && !Collection.class.isAssignableFrom(field.getField().getType()) && !Map.class.isAssignableFrom(field.getField().getType());
+    }
+
+    public static class Projection {
+
+        private final String selectClause;
+
+        private final String[] names;
+
+        private final int[] positions;
+
+        private final String metaType;
+
+        Projection(String entityName, String metaType, List<String> names, List<String> columns) {
+            this.metaType = metaType;
+            this.names = names.toArray(new String[0]);
+            this.positions = new int[names.size()];
+            StringJoiner select = new StringJoiner(", ", "select ", " from " + entityName + " where ");
+            int position = 0;
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i) == null) {
+                    positions[i] = -1;
+                } else {
+                    positions[i] = position++;
+                    select.add(columns.get(i));
+                }
+            }
+            this.selectClause = select.toString();
+        }
+
+        public String select(String where) {
+            return selectClause + where;
+        }
+
+        public Map<String, Object> row(Object row) {
+            Object[] values = row instanceof Object[] ? (Object[]) row : new Object[]{row};
+            Map<String, Object> res = new LinkedHashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                res.put(names[i], positions[i] < 0 ? metaType : values[positions[i]]);
+            }
+            return res;
+        }
+    }
+
+}
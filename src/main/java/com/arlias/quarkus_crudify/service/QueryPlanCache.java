@@ -0,0 +1,170 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.service.common.FindAllSelectionType;
+import io.smallrye.mutiny.tuples.Tuple2;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+public class QueryPlanCache {
+
+    private static final int MAX_PLANS = 1024;
+
+    private static final Set<String> OPERATORS = Set.of("=", "!=", "<>", "<", "<=", ">", ">=", "like", "not like", "lowerlike",
+            "in", "not in", "is null", "is not null");
+
+    //NOTE operators of more than one word, longest first so that a prefix never shadows a longer one
+    public static final List<String> WORD_OPERATORS = List.of("is not null", "is null", "not like", "not in");
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private final EntityMetadata metadata;
+
+    private final String searchClause;
+
+    private final Map<List<Object>, QueryPlan> plans = new ConcurrentHashMap<>();
+
+    public QueryPlanCache(EntityMetadata metadata) {
+        this.metadata = metadata;
+        List<String> searchFields = metadata.getSearchableFields().isEmpty()
+                ? metadata.getStringFields()
+                : metadata.getSearchableFields().stream().map(EntityMetadata.FieldMetadata::getName).collect(Collectors.toList());
+        this.searchClause = searchFields.isEmpty()
+                ? "1 = 0"
+                : searchFields.stream()
+                        .map(sf -> "lower(" + sf + ") like lower(:search)")
+                        .collect(Collectors.joining(" or ", "(", ")"));
+    }
+
+    public QueryPlan plan(FindAllSelectionType selectionType, String search, Map<String, Tuple2<String, String>> filters) {
+        return plan(selectionType, search, filters, false);
+    }
+
+    public QueryPlan plan(FindAllSelectionType selectionType, String search, Map<String, Tuple2<String, String>> filters, boolean indexed) {
+        boolean searching = search != null && !search.isBlank();
+        List<String> filterKey = new ArrayList<>(filters.size());
+        for (Map.Entry<String, Tuple2<String, String>> filter : new TreeMap<>(filters).entrySet()) {
+            filterKey.add(filter.getKey() + " " + filter.getValue().getItem1().toLowerCase());
+        }
+        List<Object> key = List.of(selectionType, searching, indexed, filterKey);
+        QueryPlan plan = plans.get(key);
+        if (plan != null) {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+        plan = new QueryPlan(selectionType, searching, indexed, new TreeMap<>(filters));
+        if (plans.size() < MAX_PLANS) {
+            plans.putIfAbsent(key, plan);
+        }
+        return plan;
+    }
+
+    public static Map<String, Object> getStats() {
+        long total = hits.sum() + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hit-rate-percent", total == 0 ? 0 : hits.sum() * 100 / total);
+        return stats;
+    }
+
+    public class QueryPlan {
+
+        @Getter
+        private final String query;
+
+        private final List<FilterBinding> bindings = new ArrayList<>();
+
+        private final boolean searching;
+
+        private final boolean indexed;
+
+        QueryPlan(FindAllSelectionType selectionType, boolean searching, boolean indexed, SortedMap<String, Tuple2<String, String>> filters) {
+            this.searching = searching;
+            this.indexed = indexed;
+            StringJoiner query = new StringJoiner(" and ");
+            switch (selectionType) {
+                case ARCHIVED:
+                    query.add("deleted = true");
+                    break;
+                case ALL:
+                    break;
+                case STANDART:
+                default:
+                    query.add("deleted = false");
+            }
+            if (searching) {
+                query.add(indexed ? "id in :" + SearchIndex.HITS_PARAM : searchClause);
+            }
+            for (Map.Entry<String, Tuple2<String, String>> filter : filters.entrySet()) {
+                String operator = filter.getValue().getItem1().toLowerCase();
+                if (!OPERATORS.contains(operator)) {
+                    CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Unsupported filter operator {}", filter.getValue().getItem1()).boom();
+                }
+                EntityMetadata.FieldMetadata field = metadata.getEntityField(filter.getKey());
+                if (field == null) {
+                    EntityMetadata.unknownField(metadata.getType(), filter.getKey()).boom();
+                }
+                boolean lower = operator.equals("lowerlike");
+                if (operator.equals("is null") || operator.equals("is not null")) {
+                    query.add(field.getName() + " " + operator);
+                    continue;
+                }
+                query.add(lower
+                        ? "lower(" + field.getName() + ") like :" + field.getName()
+                        : field.getName() + " " + operator + " :" + field.getName());
+                bindings.add(new FilterBinding(field, lower, operator.endsWith("in")));
+            }
+            this.query = query.length() == 0 ? "1 = 1" : query.toString();
+        }
+
+        public Map<String, Object> bind(String search, Map<String, Tuple2<String, String>> filters) {
+            return bind(search, null, filters);
+        }
+
+        public Map<String, Object> bind(String search, List<Long> hits, Map<String, Tuple2<String, String>> filters) {
+            Map<String, Object> params = new HashMap<>();
+            if (searching && indexed) {
+                params.put(SearchIndex.HITS_PARAM, hits);
+            } else if (searching) {
+                params.put("search", "%" + search + "%");
+            }
+            for (FilterBinding binding : bindings) {
+                String value = filters.get(binding.field.getName()).getItem2();
+                if (binding.list) {
+                    List<Object> values = new ArrayList<>();
+                    for (String item : value.split(",")) {
+                        values.add(binding.field.toFilterValue(item.trim()));
+                    }
+                    params.put(binding.field.getName(), values);
+                } else {
+                    params.put(binding.field.getName(), binding.field.toFilterValue(binding.lower ? value.toLowerCase() : value));
+                }
+            }
+            return params;
+        }
+    }
+
+    private static class FilterBinding {
+
+        private final EntityMetadata.FieldMetadata field;
+
+        private final boolean lower;
+
+        private final boolean list;
+
+        FilterBinding(EntityMetadata.FieldMetadata field, boolean lower, boolean list) {
+            this.field = field;
+            this.lower = lower;
+            this.list = list;
+        }
+    }
+
+}
@@ -0,0 +1,378 @@
+package com.arlias.quarkus_crudify.service;
+
+import com.arlias.quarkus_crudify.configuration.ArliasThreadFactory;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.util.annotations.Searchable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.jpa.QueryHints;
+
+import javax.enterprise.inject.spi.CDI;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.UserTransaction;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+//NOTE in-process trigram index of the @Searchable fields, matches exactly what the like clause would and ranks the hits
+@Slf4j
+public class SearchIndex {
+
+    public static final String HITS_PARAM = "searchHits";
+
+    private static final int GRAM = 3;
+
+    private static final LongAdder searches = new LongAdder();
+    private static final LongAdder fallbacks = new LongAdder();
+    private static final LongAdder rebuilds = new LongAdder();
+    private static final LongAdder refreshed = new LongAdder();
+
+    private static final Map<String, SearchIndex> indexes = new ConcurrentHashMap<>();
+
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(new ArliasThreadFactory("crudify-search-index"));
+
+    private final EntityMetadata metadata;
+
+    @Getter
+    private final String entityName;
+
+    private final boolean enabled;
+
+    private final int[] weights;
+
+    private final String loadQuery;
+
+    @Getter
+    private final int maxHits;
+
+    private final long maxAgeNanos;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, String[]> documents = new HashMap<>();
+
+    private Map<String, Set<Long>> postings = new HashMap<>();
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final Set<Long> replay = new HashSet<>();
+
+    private final Lock refreshing = new ReentrantLock();
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile long builtFor = -1;
+
+    private volatile long builtAt;
+
+    public SearchIndex(EntityMetadata metadata) {
+        this.metadata = metadata;
+        Entity entity = metadata.getType().getAnnotation(Entity.class);
+        this.entityName = entity == null || entity.name().isBlank() ? metadata.getType().getSimpleName() : entity.name();
+        List<EntityMetadata.FieldMetadata> fields = metadata.getSearchableFields();
+        this.enabled = !fields.isEmpty()
+                && ConfigProvider.getConfig().getOptionalValue("crudify.search.backend", String.class).orElse("index").equalsIgnoreCase("index");
+        this.weights = fields.stream().mapToInt(f -> f.getField().getAnnotation(Searchable.class).weight()).toArray();
+        StringJoiner select = new StringJoiner(", ", "select id, ", " from " + entityName);
+        fields.forEach(f -> select.add(f.getName()));
+        this.loadQuery = select.toString();
+        this.maxHits = ConfigProvider.getConfig().getOptionalValue("crudify.search.max-hits", Integer.class).orElse(1000);
+        this.maxAgeNanos = TimeUnit.SECONDS.toNanos(ConfigProvider.getConfig().getOptionalValue("crudify.search.max-age-seconds", Long.class).orElse(300L));
+        if (enabled) {
+            indexes.put(metadata.getType().getSimpleName(), this);
+        }
+    }
+
+    public boolean accepts(String search) {
+        if (!enabled || search == null || search.isBlank()) {
+            return false;
+        }
+        boolean current = builtFor == generation.get();
+        if (!current || (maxAgeNanos > 0 && System.nanoTime() - builtAt > maxAgeNanos)) {
+            scheduleBuild();
+        }
+        if (search.length() < GRAM || !current) {
+            fallbacks.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public List<Long> search(EntityManager entityManager, String search) {
+        if (!dirty.isEmpty()) {
+            refresh(entityManager);
+        }
+        searches.increment();
+        String query = normalize(search);
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Set<Long>> lists = new ArrayList<>();
+            for (String gram : gramsOf(query)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            for (Long id : lists.get(0)) {
+                if (containedInAll(lists, id)) {
+                    int score = score(documents.get(id), query);
+                    if (score > 0) {
+                        hits.add(new Hit(id, score));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingInt((Hit h) -> h.score).reversed().thenComparing(h -> h.id, Comparator.reverseOrder()));
+        List<Long> res = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            res.add(hit.id);
+        }
+        return res;
+    }
+
+    public List<Long> bounded(List<Long> hits) {
+        if (hits == null || hits.size() <= maxHits) {
+            return hits;
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    public void changed(Long id) {
+        if (enabled && id != null) {
+            dirty.add(id);
+        }
+    }
+
+    public void changed(Iterable<Long> ids) {
+        if (enabled) {
+            ids.forEach(this::changed);
+        }
+    }
+
+    public void invalidate() {
+        if (enabled) {
+            generation.incrementAndGet();
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("searches", searches.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("refreshed", refreshed.sum());
+        indexes.forEach((name, index) -> stats.put("entries." + name, index.size()));
+        return stats;
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scheduleBuild() {
+        if (building.compareAndSet(false, true)) {
+            try {
+                builder.execute(this::build);
+            } catch (RuntimeException e) {
+                building.set(false);
+                log.error("Entity {} search index build not scheduled", metadata.getType().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void build() {
+        try {
+            long target = generation.get();
+            long start = System.nanoTime();
+            Map<Long, String[]> builtDocuments = new HashMap<>();
+            Map<String, Set<Long>> builtPostings = new HashMap<>();
+            UserTransaction transaction = CDI.current().select(UserTransaction.class).get();
+            transaction.begin();
+            try {
+                EntityManager entityManager = CDI.current().select(EntityManagerFactory.class).get().createEntityManager();
+                try {
+                    entityManager.joinTransaction();
+                    try (Stream<Object[]> rows = entityManager.createQuery(loadQuery, Object[].class)
+                            .setHint(QueryHints.HINT_FETCH_SIZE, 1000)
+                            .setHint(QueryHints.HINT_READONLY, true)
+                            .getResultStream()) {
+                        rows.forEach(row -> add(builtDocuments, builtPostings, row));
+                    }
+                } finally {
+                    entityManager.close();
+                }
+            } finally {
+                transaction.rollback();
+            }
+            lock.writeLock().lock();
+            try {
+                documents = builtDocuments;
+                postings = builtPostings;
+                //NOTE the read may have missed them, the next search reloads them into the new index
+                dirty.addAll(replay);
+                replay.clear();
+                builtAt = System.nanoTime();
+                builtFor = target;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuilds.increment();
+            log.debug("Entity {} search index built: {} rows in {} ms", metadata.getType().getSimpleName(), builtDocuments.size(), TimeUnit.NANOSECONDS.toMillis(builtAt - start));
+        } catch (Exception e) {
+            log.error("Entity {} search index build failed", metadata.getType().getSimpleName(), e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    //NOTE one refresh at a time, so that an older read of a row is never applied over a newer one
+    private void refresh(EntityManager entityManager) {
+        refreshing.lock();
+        try {
+            List<Long> ids = new ArrayList<>(dirty);
+            dirty.removeAll(ids);
+            int batchSize = ConfigProvider.getConfig().getOptionalValue("crudify.bulk.id-batch-size", Integer.class).orElse(1000);
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                rows.addAll(entityManager.createQuery(loadQuery + " where id in :ids", Object[].class)
+                        .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + batchSize)))
+                        .setHint(QueryHints.HINT_READONLY, true)
+                        .getResultList());
+            }
+            lock.writeLock().lock();
+            try {
+                ids.forEach(this::remove);
+                rows.forEach(row -> add(documents, postings, row));
+                if (building.get()) {
+                    replay.addAll(ids);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            refreshed.add(ids.size());
+        } finally {
+            refreshing.unlock();
+        }
+    }
+
+    private static void add(Map<Long, String[]> documents, Map<String, Set<Long>> postings, Object[] row) {
+        Long id = (Long) row[0];
+        String[] texts = new String[row.length - 1];
+        for (int i = 1; i < row.length; i++) {
+            if (row[i] != null) {
+                texts[i - 1] = normalize(row[i].toString());
+                for (String gram : gramsOf(texts[i - 1])) {
+                    postings.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+                }
+            }
+        }
+        documents.put(id, texts);
+    }
+
+    private void remove(Long id) {
+        String[] texts = documents.remove(id);
+        if (texts == null) {
+            return;
+        }
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            for (String gram : gramsOf(text)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private int score(String[] texts, String query) {
+        int score = 0;
+        for (int i = 0; i < texts.length; i++) {
+            String text = texts[i];
+            int at = text == null ? -1 : text.indexOf(query);
+            if (at < 0) {
+                continue;
+            }
+            int points = 1;
+            if (text.length() == query.length()) {
+                points += 4;
+            } else if (startsWord(text, query, at)) {
+                points += 1;
+            }
+            score += weights[i] * points;
+        }
+        return score;
+    }
+
+    private static boolean startsWord(String text, String query, int at) {
+        for (int i = at; i >= 0; i = text.indexOf(query, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containedInAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> gramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    //NOTE same folding as the lower() of the like clause
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Hit {
+
+        private final Long id;
+
+        private final int score;
+
+        Hit(Long id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+}
@@ -1,130 +1,230 @@
 package com.arlias.quarkus_crudify.service;
 
-import com.arlias.quarkus_crudify.configuration.ArliasThreadFactory;
+import com.arlias.quarkus_crudify.configuration.CrudifyWorkerPool;
 import com.arlias.quarkus_crudify.exception.CustomException;
 import io.quarkus.hibernate.orm.panache.runtime.JpaOperations;
 import io.quarkus.vertx.web.RoutingExchange;
 import io.vertx.core.http.HttpServerRequest;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.enterprise.inject.spi.CDI;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 public class TransactionsEnvs {
 
     public static final String RESPONSE_FIELD = "res_field";
+    public static final String EXPAND = "expand";
     public static final String HTTP_METHOD = "http_method";
     public static final String CONTEXT = "context";
     public static final String REQUEST_CONTEXT = "req_context";
     public static final String JPA_CONTEXT = "jpa_context";
     public static final String THREAD_POOL = "thread_pool";
+    public static final String OPERATION_ID = "operation_id";
 
-    private static volatile TransactionsEnvs instance;
+    private static final ThreadLocal<EnvMap> currentEnvMap = new ThreadLocal<>();
 
-    private final Map<String, EnvMap> transactionsEnvMaps = new HashMap<>();
+    private static volatile CrudifyWorkerPool workerPool;
 
     private TransactionsEnvs(){
         super();
     }
 
-    public static synchronized ExecutorService initContext(RoutingExchange ex){
-        if(instance == null){
-            instance = new TransactionsEnvs();
-        }
+    public static Executor initContext(RoutingExchange ex){
         String uuid = UUID.randomUUID().toString();
         log.debug("Operation [{}] INITIALIZED: Request {}", uuid, ex.request().uri());
-        instance.transactionsEnvMaps.put(uuid, EnvMap.autoInitializeFromRoutingContext(ex, uuid));
-        return (ExecutorService) instance.transactionsEnvMaps.get(uuid).transactionsEnvs.get(THREAD_POOL);
+        return EnvMap.autoInitializeFromRoutingContext(ex, uuid).get(EnvKey.THREAD_POOL);
     }
 
-    public static synchronized ExecutorService initAsyncDirectContext(HttpServerRequest ex){
-        if(instance == null){
-            instance = new TransactionsEnvs();
-        }
+    public static Executor initAsyncDirectContext(HttpServerRequest ex){
         String uuid = UUID.randomUUID().toString();
         log.debug("Operation [{}] INITIALIZED: Request {}", uuid, ex.uri());
-        instance.transactionsEnvMaps.put(uuid, EnvMap.autoInitializeFromHttpRequest(ex, uuid));
-        return (ExecutorService) instance.transactionsEnvMaps.get(uuid).transactionsEnvs.get(THREAD_POOL);
+        return EnvMap.autoInitializeFromHttpRequest(ex, uuid).get(EnvKey.THREAD_POOL);
     }
 
-    public static synchronized void initSynchronousContext(String httpMethod){
-        if(instance == null){
-            instance = new TransactionsEnvs();
-        }
-        log.debug("Operation [{}] INITIALIZED: Request {}", Thread.currentThread().getThreadGroup().getName(), httpMethod);
-        instance.transactionsEnvMaps.put(Thread.currentThread().getThreadGroup().getName(), EnvMap.autoInitializeFromSynchronousContext(httpMethod));
+    public static void initSynchronousContext(String httpMethod){
+        String uuid = UUID.randomUUID().toString();
+        log.debug("Operation [{}] INITIALIZED: Request {}", uuid, httpMethod);
+        currentEnvMap.set(EnvMap.autoInitializeFromSynchronousContext(httpMethod, uuid));
     }
 
-    public static synchronized void clearCurrentThreadEnvs(){
-        if(instance.transactionsEnvMaps.containsKey(Thread.currentThread().getThreadGroup().getName())) {
-            RoutingExchange ex = (RoutingExchange) instance.transactionsEnvMaps.get(Thread.currentThread().getThreadGroup().getName())
-                    .transactionsEnvs
-                    .get(REQUEST_CONTEXT);
-
-            log.debug("Operation [{}] CONSUMED: closing Thread map", Thread.currentThread().getThreadGroup().getName(), ex.request().uri());
-            instance.transactionsEnvMaps.remove(Thread.currentThread().getThreadGroup().getName());
+    public static void clearCurrentThreadEnvs(){
+        EnvMap envMap = currentEnvMap.get();
+        if(envMap != null) {
+            log.debug("Operation [{}] CONSUMED: closing Thread map", envMap.<String>get(EnvKey.OPERATION_ID));
+            currentEnvMap.remove();
         } else {
-            log.debug("Operation [{}] FAILED: failed closing Thread map", Thread.currentThread().getThreadGroup().getName());
+            log.debug("Operation [{}] FAILED: failed closing Thread map", Thread.currentThread().getName());
             CustomException.get(CustomException.ErrorCode.INTERNAL, "Bad Routing").boom();
         }
     }
 
 
-    public static synchronized <T> T pullProp(String envName){
-        if(instance.transactionsEnvMaps.containsKey(Thread.currentThread().getThreadGroup().getName())) {
-            RoutingExchange ex = (RoutingExchange) instance.transactionsEnvMaps.get(Thread.currentThread().getThreadGroup().getName())
-                    .transactionsEnvs
-                    .get(REQUEST_CONTEXT);
-            log.debug("Operation [{}]: requested env {}", Thread.currentThread().getThreadGroup().getName(), envName);
-            return (T) instance.transactionsEnvMaps.get(Thread.currentThread().getThreadGroup().getName())
-                    .transactionsEnvs
-                    .get(envName);
+    public static <T> T pullProp(String envName){
+        EnvKey envKey = EnvKey.of(envName);
+        if(envKey == null) {
+            log.debug("Operation [{}]: requested unknown env {}", currentOperationId(), envName);
+            return null;
+        }
+        return pullProp(envKey);
+    }
+
+    public static <T> T pullProp(EnvKey envKey){
+        EnvMap envMap = currentEnvMap.get();
+        if(envMap != null) {
+            log.debug("Operation [{}]: requested env {}", envMap.<String>get(EnvKey.OPERATION_ID), envKey);
+            return envMap.get(envKey);
         } else {
-            log.debug("Operation [{}]: FAILED requesting env {}", Thread.currentThread().getThreadGroup().getName(), envName);
+            log.debug("Operation [{}]: FAILED requesting env {}", Thread.currentThread().getName(), envKey);
             return null;
         }
     }
 
+    public static String currentOperationId(){
+        EnvMap envMap = currentEnvMap.get();
+        return envMap != null ? envMap.get(EnvKey.OPERATION_ID) : Thread.currentThread().getName();
+    }
+
+    public static CrudifyWorkerPool workerPool(){
+        if(workerPool == null){
+            workerPool = CDI.current().select(CrudifyWorkerPool.class).get();
+        }
+        return workerPool;
+    }
+
+    private static Executor contextualExecutor(EnvMap envMap){
+        return task -> {
+            try {
+                workerPool().execute(() -> {
+                    EnvMap previous = currentEnvMap.get();
+                    currentEnvMap.set(envMap);
+                    try {
+                        task.run();
+                    } finally {
+                        if(previous != null){
+                            currentEnvMap.set(previous);
+                        } else {
+                            currentEnvMap.remove();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Operation [{}] REJECTED: worker pool saturated", envMap.<String>get(EnvKey.OPERATION_ID));
+                CustomException.get(CustomException.ErrorCode.UNVAILABLE, "Server busy, retry later").boom();
+            }
+        };
+    }
+
+    public enum EnvKey {
+
+        RESPONSE_FIELD(TransactionsEnvs.RESPONSE_FIELD),
+        EXPAND(TransactionsEnvs.EXPAND),
+        HTTP_METHOD(TransactionsEnvs.HTTP_METHOD),
+        CONTEXT(TransactionsEnvs.CONTEXT),
+        REQUEST_CONTEXT(TransactionsEnvs.REQUEST_CONTEXT),
+        JPA_CONTEXT(TransactionsEnvs.JPA_CONTEXT),
+        THREAD_POOL(TransactionsEnvs.THREAD_POOL),
+        OPERATION_ID(TransactionsEnvs.OPERATION_ID);
+
+        public final String label;
+
+        EnvKey(String label) {
+            this.label = label;
+        }
+
+        public static EnvKey of(String label){
+            if (label == null) {
+                return null;
+            }
+            switch (label) {
+                case TransactionsEnvs.RESPONSE_FIELD:
+                    return RESPONSE_FIELD;
+                case TransactionsEnvs.EXPAND:
+                    return EXPAND;
+                case TransactionsEnvs.HTTP_METHOD:
+                    return HTTP_METHOD;
+                case TransactionsEnvs.CONTEXT:
+                    return CONTEXT;
+                case TransactionsEnvs.REQUEST_CONTEXT:
+                    return REQUEST_CONTEXT;
+                case TransactionsEnvs.JPA_CONTEXT:
+                    return JPA_CONTEXT;
+                case TransactionsEnvs.THREAD_POOL:
+                    return THREAD_POOL;
+                case TransactionsEnvs.OPERATION_ID:
+                    return OPERATION_ID;
+                default:
+                    return null;
+            }
+        }
+    }
+
     private static class EnvMap {
 
-        private final Map<String, Object> transactionsEnvs = new HashMap<>();
+        private final Map<EnvKey, Object> transactionsEnvs = new EnumMap<>(EnvKey.class);
+
+        <T> T get(EnvKey envKey){
+            return (T) transactionsEnvs.get(envKey);
+        }
 
-        static synchronized EnvMap autoInitializeFromRoutingContext(RoutingExchange ex, String uuid){
+        static EnvMap autoInitializeFromRoutingContext(RoutingExchange ex, String uuid){
             EnvMap envMap = new EnvMap();
-            envMap.transactionsEnvs.put(RESPONSE_FIELD, new ArrayList<>(ex.context().queryParam(RESPONSE_FIELD)));
-            envMap.transactionsEnvs.put(HTTP_METHOD, ex.request().method().name());
-            envMap.transactionsEnvs.put(REQUEST_CONTEXT, ex);
-            envMap.transactionsEnvs.put(CONTEXT, ex.context());
-            envMap.transactionsEnvs.put(JPA_CONTEXT, new JpaOperations());
-            envMap.transactionsEnvs.put(THREAD_POOL, Executors.newCachedThreadPool(new ArliasThreadFactory(uuid)));
+            envMap.transactionsEnvs.put(EnvKey.RESPONSE_FIELD, new ArrayList<>(ex.context().queryParam(RESPONSE_FIELD)));
+            envMap.transactionsEnvs.put(EnvKey.EXPAND, expandOf(ex.context().queryParam(EXPAND)));
+            envMap.transactionsEnvs.put(EnvKey.HTTP_METHOD, ex.request().method().name());
+            envMap.transactionsEnvs.put(EnvKey.REQUEST_CONTEXT, ex);
+            envMap.transactionsEnvs.put(EnvKey.CONTEXT, ex.context());
+            envMap.transactionsEnvs.put(EnvKey.JPA_CONTEXT, new JpaOperations());
+            envMap.transactionsEnvs.put(EnvKey.THREAD_POOL, contextualExecutor(envMap));
+            envMap.transactionsEnvs.put(EnvKey.OPERATION_ID, uuid);
             return envMap;
         }
 
-        static synchronized EnvMap autoInitializeFromHttpRequest(HttpServerRequest ex, String uuid){
+        static EnvMap autoInitializeFromHttpRequest(HttpServerRequest ex, String uuid){
             EnvMap envMap = new EnvMap();
-            envMap.transactionsEnvs.put(RESPONSE_FIELD, new ArrayList<>(ex.params().getAll(RESPONSE_FIELD)));
-            envMap.transactionsEnvs.put(HTTP_METHOD, ex.method().name());
-            envMap.transactionsEnvs.put(REQUEST_CONTEXT, null);
-            envMap.transactionsEnvs.put(CONTEXT, null);
-            envMap.transactionsEnvs.put(JPA_CONTEXT, new JpaOperations());
-            envMap.transactionsEnvs.put(THREAD_POOL, Executors.newCachedThreadPool(new ArliasThreadFactory(uuid)));
+            envMap.transactionsEnvs.put(EnvKey.RESPONSE_FIELD, new ArrayList<>(ex.params().getAll(RESPONSE_FIELD)));
+            envMap.transactionsEnvs.put(EnvKey.EXPAND, expandOf(ex.params().getAll(EXPAND)));
+            envMap.transactionsEnvs.put(EnvKey.HTTP_METHOD, ex.method().name());
+            envMap.transactionsEnvs.put(EnvKey.REQUEST_CONTEXT, null);
+            envMap.transactionsEnvs.put(EnvKey.CONTEXT, null);
+            envMap.transactionsEnvs.put(EnvKey.JPA_CONTEXT, new JpaOperations());
+            envMap.transactionsEnvs.put(EnvKey.THREAD_POOL, contextualExecutor(envMap));
+            envMap.transactionsEnvs.put(EnvKey.OPERATION_ID, uuid);
             return envMap;
         }
 
-        static synchronized EnvMap autoInitializeFromSynchronousContext(String httpMethod){
+        //NOTE null when the param is absent, a bare expand= asks for no relation at all
+        private static List<String> expandOf(List<String> values) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            List<String> expand = new ArrayList<>();
+            for (String value : values) {
+                for (String name : value.split(",")) {
+                    if (!name.isBlank()) {
+                        expand.add(name.trim());
+                    }
+                }
+            }
+            return expand;
+        }
+
+        static EnvMap autoInitializeFromSynchronousContext(String httpMethod, String uuid){
             EnvMap envMap = new EnvMap();
-            envMap.transactionsEnvs.put(RESPONSE_FIELD, new ArrayList<>());
-            envMap.transactionsEnvs.put(HTTP_METHOD, httpMethod);
-            envMap.transactionsEnvs.put(REQUEST_CONTEXT, null);
-            envMap.transactionsEnvs.put(CONTEXT, null);
-            envMap.transactionsEnvs.put(JPA_CONTEXT, new JpaOperations());
-            envMap.transactionsEnvs.put(THREAD_POOL, null);
+            envMap.transactionsEnvs.put(EnvKey.RESPONSE_FIELD, new ArrayList<>());
+            envMap.transactionsEnvs.put(EnvKey.EXPAND, null);
+            envMap.transactionsEnvs.put(EnvKey.HTTP_METHOD, httpMethod);
+            envMap.transactionsEnvs.put(EnvKey.REQUEST_CONTEXT, null);
+            envMap.transactionsEnvs.put(EnvKey.CONTEXT, null);
+            envMap.transactionsEnvs.put(EnvKey.JPA_CONTEXT, new JpaOperations());
+            envMap.transactionsEnvs.put(EnvKey.THREAD_POOL, null);
+            envMap.transactionsEnvs.put(EnvKey.OPERATION_ID, uuid);
             return envMap;
         }
 
@@ -132,4 +232,3 @@ public class TransactionsEnvs {
 
 
 }
-
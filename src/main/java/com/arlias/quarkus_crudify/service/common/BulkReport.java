@@ -0,0 +1,88 @@
+package com.arlias.quarkus_crudify.service.common;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@ToString
+public class BulkReport {
+
+    private long total;
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private final List<Item> items = new ArrayList<>();
+
+    private String failure;
+
+    public void add(Chunk chunk) {
+        chunks.add(chunk);
+        total += chunk.getSize();
+    }
+
+    public void add(long count) {
+        total += count;
+    }
+
+    public void addItem(Item item) {
+        items.add(item);
+    }
+
+    public void fail(String failure) {
+        this.failure = failure;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Getter
+    @ToString
+    public static class Item {
+
+        private final int index;
+
+        private final Long id;
+
+        private final String status;
+
+        public Item(int index, Long id, String status) {
+            this.index = index;
+            this.id = id;
+            this.status = status;
+        }
+    }
+
+    @Getter
+    @ToString
+    public static class Chunk {
+
+        private final int index;
+
+        private final int size;
+
+        private final Long firstId;
+
+        private final Long lastId;
+
+        private final boolean committed;
+
+        private final long millis;
+
+        public Chunk(int index, int size, Long firstId, Long lastId, boolean committed, long millis) {
+            this.index = index;
+            this.size = size;
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.committed = committed;
+            this.millis = millis;
+        }
+    }
+
+}
@@ -2,54 +2,300 @@ package com.arlias.quarkus_crudify.util;
 
 import com.arlias.quarkus_crudify.exception.CustomException;
 import com.arlias.quarkus_crudify.service.TransactionsEnvs;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.quarkus.vertx.web.RoutingExchange;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import lombok.extern.slf4j.Slf4j;
 
+import javax.enterprise.inject.spi.CDI;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
+@Slf4j
 public class CrudifyFramework {
 
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
 
-    public static synchronized Uni<?> buildResponse(RoutingExchange ex, Producer producer){
+    private static final StageTimings timings = new StageTimings();
+
+    private static volatile ObjectMapper objectMapper;
+
+
+    //NOTE HttpServerResponse is not thread-safe: status, headers and completion run on the route context
+    public static Uni<?> buildResponse(RoutingExchange ex, Producer producer){
+        long start = System.nanoTime();
+        Context context = contextOf(ex);
+        Executor executor = TransactionsEnvs.initContext(ex);
+        long contextInit = System.nanoTime() - start;
         return Uni.createFrom()
-                .voidItem()
-                .emitOn(TransactionsEnvs.initContext(ex))
-                .map((v) -> Unchecked.unchecked( () -> {
+                .emitter(em -> {
                     try {
-                        return producer.produce();
+                        executor.execute(() -> {
+                            try {
+                                long producerStart = System.nanoTime();
+                                Object body = null;
+                                StatusResponse status = null;
+                                CustomException failure = null;
+                                long serializationStart = producerStart;
+                                try {
+                                    Object result = producer.produce();
+                                    serializationStart = System.nanoTime();
+                                    if(result instanceof StatusResponse){
+                                        status = (StatusResponse) result;
+                                        result = status.body;
+                                    }
+                                    body = serialize(result);
+                                    if(body instanceof SerializedResponse){
+                                        ResponseCache.resolve(ex.context());
+                                    }
+                                } catch (CustomException ce){
+                                    failure = ce;
+                                } catch (Throwable t){
+                                    failure = CustomException.get(CustomException.ErrorCode.INTERNAL, t.getMessage());
+                                }
+                                long end = System.nanoTime();
+                                String timing = timings.record(contextInit, serializationStart - producerStart, end - serializationStart);
+                                Object ok = body;
+                                StatusResponse okStatus = status;
+                                CustomException ko = failure;
+                                context.runOnContext(v -> {
+                                    try {
+                                        ex.response().putHeader(SERVER_TIMING_HEADER, timing);
+                                        if(okStatus != null){
+                                            ex.response().setStatusCode(okStatus.code);
+                                            ex.response().setStatusMessage(okStatus.message);
+                                        }
+                                        if(ko != null){
+                                            em.complete(CustomException.parseResponse(ex, () -> { throw ko; }));
+                                            return;
+                                        }
+                                        if(ok instanceof SerializedResponse){
+                                            ResponseCache.store(ex.context(), ((SerializedResponse) ok).json);
+                                        }
+                                        em.complete(ok);
+                                    } catch (Throwable t){
+                                        em.fail(t);
+                                    }
+                                });
+                            } catch (Throwable t){
+                                em.fail(t);
+                            }
+                        });
                     } catch (CustomException ce){
-                        CustomException.get(ce.getErrorCode(), ce.getParsedErrorMessage()).boom();
-                    } catch (Exception e){
-                        CustomException.get(CustomException.ErrorCode.INTERNAL, e.getMessage()).boom();
+                        em.complete(CustomException.parseResponse(ex, () -> { throw ce; }));
+                    } catch (Throwable t){
+                        em.fail(t);
                     }
-                    return "";
-                }))
-                .map(us -> CustomException.parseResponse(ex, us));
+                });
+    }
+
+    private static Context contextOf(RoutingExchange ex){
+        Context context = Vertx.currentContext();
+        return context != null ? context : ex.context().vertx().getOrCreateContext();
     }
 
 
-    public static synchronized Uni<Response> buildResponse(HttpServerRequest request, HttpServerResponse response, Producer producer){
+    public static Uni<Response> buildResponse(HttpServerRequest request, HttpServerResponse response, Producer producer){
+        long start = System.nanoTime();
+        Executor executor = TransactionsEnvs.initAsyncDirectContext(request);
+        long contextInit = System.nanoTime() - start;
         return Uni.createFrom()
-                .voidItem()
-                .emitOn(TransactionsEnvs.initAsyncDirectContext(request))
-                .map((v) -> {
+                .emitter(em -> {
                     try {
-                        return Response.ok(producer.produce()).build();
+                        executor.execute(() -> {
+                            long producerStart = System.nanoTime();
+                            try {
+                                Object result = producer.produce();
+                                long serializationStart = System.nanoTime();
+                                Response.ResponseBuilder builder;
+                                if(result instanceof StatusResponse){
+                                    StatusResponse status = (StatusResponse) result;
+                                    builder = Response.status(status.code, status.message);
+                                    result = status.body;
+                                } else {
+                                    builder = Response.ok();
+                                }
+                                if(result instanceof String){
+                                    builder.entity(result);
+                                } else {
+                                    builder.entity(objectMapper().writeValueAsString(result)).type(MediaType.APPLICATION_JSON_TYPE);
+                                }
+                                long end = System.nanoTime();
+                                em.complete(builder.header(SERVER_TIMING_HEADER, timings.record(contextInit, serializationStart - producerStart, end - serializationStart)).build());
+                            } catch (CustomException ce){
+                                em.complete(Response.status(ce.getErrorCode().code).entity(ce.getParsedErrorMessage()).build());
+                            } catch (Throwable t){
+                                em.complete(Response.status(500).entity(t.getCause()).build());
+                            }
+                        });
                     } catch (CustomException ce){
-                        return Response.status(ce.getErrorCode().code).entity(ce.getParsedErrorMessage()).build();
+                        em.complete(Response.status(ce.getErrorCode().code).entity(ce.getParsedErrorMessage()).build());
                     } catch (Throwable t){
-                        return Response.status(500).entity(t.getCause()).build();
+                        em.fail(t);
                     }
                 });
     }
 
+    public static void stream(RoutingExchange ex, RowProducer producer){
+        Context context = contextOf(ex);
+        Executor executor = TransactionsEnvs.initContext(ex);
+        try {
+            executor.execute(() -> {
+                NdjsonResponseStream out = null;
+                try {
+                    out = new NdjsonResponseStream(ex.response(), context, objectMapper());
+                    producer.produce(out::writeRow);
+                    out.end();
+                    log.debug("Operation [{}]: streamed {} rows", TransactionsEnvs.currentOperationId(), out.getRows());
+                } catch (Throwable t){
+                    failStream(ex, context, out, t);
+                }
+            });
+        } catch (CustomException ce){
+            failStream(ex, context, null, ce);
+        }
+    }
+
+    private static void failStream(RoutingExchange ex, Context context, NdjsonResponseStream out, Throwable t){
+        log.warn("Operation [{}]: stream failed after {} rows", TransactionsEnvs.currentOperationId(), out == null ? 0 : out.getRows(), t);
+        CustomException ce = t instanceof CustomException ? (CustomException) t : CustomException.get(CustomException.ErrorCode.INTERNAL, t);
+        String message = String.valueOf(t instanceof CustomException ? ce.getParsedErrorMessage() : t.getMessage());
+        context.runOnContext(v -> {
+            if(ex.response().ended()){
+                return;
+            }
+            if(ex.response().headWritten()){
+                ex.response().reset();
+            } else {
+                ex.response().setStatusCode(ce.getErrorCode().code);
+                ex.response().setStatusMessage(ce.getErrorCode().toString());
+                ex.response().putHeader("Content-Type", MediaType.TEXT_PLAIN);
+                ex.response().end(message);
+            }
+        });
+    }
+
+    public static StatusResponse status(int code, String message, Object body){
+        return new StatusResponse(code, message, body);
+    }
+
+    public static StatusResponse failure(CustomException e){
+        return new StatusResponse(e.getErrorCode().code, e.getParsedErrorMessage(), e.getExtensions());
+    }
+
+    public static Map<String, Object> getStageTimings(){
+        return timings.getStats();
+    }
+
+    private static Object serialize(Object result) throws JsonProcessingException {
+        if(result == null || result instanceof String || result instanceof Buffer){
+            return result;
+        }
+        return new SerializedResponse(objectMapper().writeValueAsString(result));
+    }
+
+    private static ObjectMapper objectMapper(){
+        if(objectMapper == null){
+            objectMapper = CDI.current().select(ObjectMapper.class).get();
+        }
+        return objectMapper;
+    }
+
 
     @FunctionalInterface
     public interface Producer {
         Object produce() throws Exception;
     }
 
+    @FunctionalInterface
+    public interface RowProducer {
+        void produce(RowSink sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface RowSink {
+        void accept(Object row) throws IOException;
+    }
+
+    public static class StatusResponse {
+
+        private final int code;
+
+        private final String message;
+
+        private final Object body;
+
+        StatusResponse(int code, String message, Object body) {
+            this.code = code;
+            this.message = message;
+            this.body = body;
+        }
+    }
+
+    @JsonSerialize(using = SerializedResponse.RawSerializer.class)
+    public static class SerializedResponse {
+
+        private final String json;
+
+        SerializedResponse(String json) {
+            this.json = json;
+        }
+
+        static class RawSerializer extends JsonSerializer<SerializedResponse> {
+
+            @Override
+            public void serialize(SerializedResponse value, JsonGenerator g, SerializerProvider provider) throws IOException {
+                g.writeRawValue(value.json);
+            }
+        }
+    }
+
+    private static class StageTimings {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder contextInitNanos = new LongAdder();
+        private final LongAdder producerNanos = new LongAdder();
+        private final LongAdder serializationNanos = new LongAdder();
+
+        String record(long contextInit, long producer, long serialization){
+            requests.increment();
+            contextInitNanos.add(contextInit);
+            producerNanos.add(producer);
+            serializationNanos.add(serialization);
+            return "context;dur=" + toMillis(contextInit)
+                    + ", producer;dur=" + toMillis(producer)
+                    + ", serialization;dur=" + toMillis(serialization);
+        }
+
+        Map<String, Object> getStats(){
+            long count = Math.max(1, requests.sum());
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", requests.sum());
+            stats.put("context.avg-micros", contextInitNanos.sum() / count / 1000);
+            stats.put("producer.avg-micros", producerNanos.sum() / count / 1000);
+            stats.put("serialization.avg-micros", serializationNanos.sum() / count / 1000);
+            return stats;
+        }
+
+        private static String toMillis(long nanos){
+            return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000d);
+        }
+    }
+
 }
@@ -1,6 +1,10 @@
 package com.arlias.quarkus_crudify.util;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SecurityException;
@@ -9,58 +13,82 @@ import io.vertx.ext.web.RoutingContext;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import javax.annotation.PostConstruct;
+import javax.crypto.SecretKey;
 import javax.enterprise.context.ApplicationScoped;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
 @Slf4j
 public class JWTGenerator {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     @ConfigProperty(name = "crudify.server.jwt.secret", defaultValue = "13a4-419b-813c-d2e326102dd7-2e408df8-13a4-419b-813c-d2e326102dd7")
     String secret;
 
+    @ConfigProperty(name = "crudify.server.jwt.claims-cache-size", defaultValue = "10000")
+    long claimsCacheSize;
+
+    private SecretKey key;
+
+    private JwtParser parser;
+
+    private Cache<String, Jwe<Claims>> decodedTokens;
+
+    @PostConstruct
+    void init() {
+        key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .decryptWith(key)
+                .build();
+        decodedTokens = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new UntilExpiration())
+                .recordStats()
+                .build();
+    }
+
 
-    public synchronized <T> T getClaim(RoutingContext rc, String claim, Class<T> clazz){
+    public <T> T getClaim(RoutingContext rc, String claim, Class<T> clazz){
         String token = rc.request().getHeader("Auth");
         Jwe<Claims> decodedToken = decodeClaims(token);
         return decodedToken.getPayload().get(claim, clazz);
     }
 
-    public synchronized <T> T getClaim(RoutingExchange ex, String claim, Class<T> clazz){
+    public <T> T getClaim(RoutingExchange ex, String claim, Class<T> clazz){
         String token = ex.request().getHeader("Auth");
         Jwe<Claims> decodedToken = decodeClaims(token);
         return decodedToken.getPayload().get(claim, clazz);
     }
 
-    public synchronized <T> T getClaim(RoutingContext rc, String tokenHeaderName, String claim, Class<T> clazz){
+    public <T> T getClaim(RoutingContext rc, String tokenHeaderName, String claim, Class<T> clazz){
         String token = rc.request().getHeader(tokenHeaderName);
         Jwe<Claims> decodedToken = decodeClaims(token);
         return decodedToken.getPayload().get(claim, clazz);
     }
 
-    public synchronized <T> T getClaim(RoutingExchange ex, String tokenHeaderName, String claim, Class<T> clazz){
+    public <T> T getClaim(RoutingExchange ex, String tokenHeaderName, String claim, Class<T> clazz){
         String token = ex.request().getHeader(tokenHeaderName);
         Jwe<Claims> decodedToken = decodeClaims(token);
         return decodedToken.getPayload().get(claim, clazz);
     }
 
-    public synchronized String getToken(Object data, String... excludedKeys) {
+    public String getToken(Object data, String... excludedKeys) {
         LocalDateTime now = LocalDateTime.now();
         JwtBuilder jwtBuilder = Jwts.builder()
                 .issuer("ArliasCrudify")
                 .subject("arliasjwt")
                 .issuedAt(Date.from(now.atZone(ZoneId.systemDefault()).toInstant()))
                 .expiration(Date.from(now.plus(30, ChronoUnit.MINUTES).atZone(ZoneId.systemDefault()).toInstant()))
-                .encryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), Jwts.ENC.A256CBC_HS512);
+                .encryptWith(key, Jwts.ENC.A256CBC_HS512);
 
-        LinkedHashMap<String, Object> dataParsed = new ObjectMapper().convertValue(data, LinkedHashMap.class);
+        LinkedHashMap<String, Object> dataParsed = MAPPER.convertValue(data, LinkedHashMap.class);
 
         for (String key : dataParsed.keySet()) {
             if (!List.of(excludedKeys).contains(key))
@@ -70,13 +98,13 @@ public class JWTGenerator {
         return jwtBuilder.compact();
     }
 
-    public synchronized String getToken(Object data, Integer expireAfter, ChronoUnit timeUnit, String... excludedKeys) {
+    public String getToken(Object data, Integer expireAfter, ChronoUnit timeUnit, String... excludedKeys) {
         LocalDateTime now = LocalDateTime.now();
         JwtBuilder jwtBuilder = Jwts.builder()
                 .issuer("ArliasCrudify")
                 .subject("arliasjwt")
                 .issuedAt(Date.from(now.atZone(ZoneId.systemDefault()).toInstant()))
-                .encryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), Jwts.ENC.A256CBC_HS512);
+                .encryptWith(key, Jwts.ENC.A256CBC_HS512);
 
         if (expireAfter == null) {
             jwtBuilder = jwtBuilder.expiration(Date.from(now.plus(30, ChronoUnit.MINUTES).atZone(ZoneId.systemDefault()).toInstant()));
@@ -86,7 +114,7 @@ public class JWTGenerator {
             jwtBuilder = jwtBuilder.expiration(Date.from(now.plus(expireAfter, timeUnit).atZone(ZoneId.systemDefault()).toInstant()));
         }
 
-        LinkedHashMap<String, Object> dataParsed = new ObjectMapper().convertValue(data, LinkedHashMap.class);
+        LinkedHashMap<String, Object> dataParsed = MAPPER.convertValue(data, LinkedHashMap.class);
         for (String key : dataParsed.keySet()) {
             if (!List.of(excludedKeys).contains(key))
                 jwtBuilder.claim(key, dataParsed.get(key));
@@ -96,14 +124,14 @@ public class JWTGenerator {
     }
 
 
-    public synchronized String getGuestToken() {
+    public String getGuestToken() {
         LocalDateTime now = LocalDateTime.now();
         JwtBuilder jwtBuilder = Jwts.builder()
                 .issuer("ArliasCrudify")
                 .subject("arliasjwt")
                 .issuedAt(Date.from(now.atZone(ZoneId.systemDefault()).toInstant()))
                 .expiration(Date.from(now.plus(1, ChronoUnit.YEARS).atZone(ZoneId.systemDefault()).toInstant()))
-                .encryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), Jwts.ENC.A256CBC_HS512);
+                .encryptWith(key, Jwts.ENC.A256CBC_HS512);
 
         jwtBuilder.claim("metaType", "Guest");
 
@@ -111,16 +139,16 @@ public class JWTGenerator {
     }
 
 
-    public synchronized String getGuestToken(Object data, String... excludedKeys) {
+    public String getGuestToken(Object data, String... excludedKeys) {
         LocalDateTime now = LocalDateTime.now();
         JwtBuilder jwtBuilder = Jwts.builder()
                 .issuer("ArliasCrudify")
                 .subject("arliasjwt")
                 .issuedAt(Date.from(now.atZone(ZoneId.systemDefault()).toInstant()))
                 .expiration(Date.from(now.plus(1, ChronoUnit.YEARS).atZone(ZoneId.systemDefault()).toInstant()))
-                .encryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), Jwts.ENC.A256CBC_HS512);
+                .encryptWith(key, Jwts.ENC.A256CBC_HS512);
 
-        LinkedHashMap<String, Object> dataParsed = new ObjectMapper().convertValue(data, LinkedHashMap.class);
+        LinkedHashMap<String, Object> dataParsed = MAPPER.convertValue(data, LinkedHashMap.class);
 
         for (String key : dataParsed.keySet()) {
             if (!List.of(excludedKeys).contains(key))
@@ -131,92 +159,108 @@ public class JWTGenerator {
     }
 
 
-    public synchronized String getSimpleToken() {
+    public String getSimpleToken() {
         LocalDateTime now = LocalDateTime.now();
         return Jwts.builder()
                 .issuer("ArliasCrudify")
                 .subject("msilverman")
                 .issuedAt(Date.from(now.atZone(ZoneId.systemDefault()).toInstant()))
                 .expiration(Date.from(now.plus(1, ChronoUnit.YEARS).atZone(ZoneId.systemDefault()).toInstant()))
-                .encryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), Jwts.ENC.A256CBC_HS512).compact();
+                .encryptWith(key, Jwts.ENC.A256CBC_HS512).compact();
     }
 
 
-    public synchronized Jwt decode(String token) {
-        JwtParser jwtParser = Jwts.parser()
-                .decryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
-                .build();
+    public Jwt decode(String token) {
         try {
-            return jwtParser.parseEncryptedContent(token);
+            return parser.parseEncryptedContent(token);
         } catch (ExpiredJwtException | MalformedJwtException | SecurityException | IllegalArgumentException e) {
             log.error("Token not valid", e);
             return null;
         }
     }
 
-    public synchronized Jwe<Claims> decodeClaims(String token) {
-        JwtParser jwtParser = Jwts.parser()
-                .decryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
-                .build();
+    public Jwe<Claims> decodeClaims(String token) {
+        if (token == null) {
+            return null;
+        }
+        Jwe<Claims> cached = decodedTokens.getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            return jwtParser.parseEncryptedClaims(token);
+            Jwe<Claims> decoded = parser.parseEncryptedClaims(token);
+            decodedTokens.put(token, decoded);
+            return decoded;
         } catch (ExpiredJwtException | MalformedJwtException | SecurityException | IllegalArgumentException e) {
             log.error("Token not valid", e);
             return null;
         }
     }
 
-    public synchronized HashMap<String, Object> decodeClaimsToMap(String token) {
-        JwtParser jwtParser = Jwts.parser()
-                .decryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
-                .build();
-        try {
-            Jwe<Claims> decodedToken = jwtParser.parseEncryptedClaims(token);
-            HashMap<String, Object> data = new HashMap<>();
-            for(String key : decodedToken.getPayload().keySet()){
-                data.put(key, decodedToken.getPayload().get(key));
-            }
-            return data;
-        } catch (ExpiredJwtException | MalformedJwtException | SecurityException | IllegalArgumentException e) {
-            log.error("Token not valid", e);
+    public HashMap<String, Object> decodeClaimsToMap(String token) {
+        Jwe<Claims> decodedToken = decodeClaims(token);
+        if (decodedToken == null) {
             return null;
         }
+        return new HashMap<>(decodedToken.getPayload());
     }
 
-    public synchronized HashMap<String, Object> decodeClaimsToMapWithToken(String token) {
-        JwtParser jwtParser = Jwts.parser()
-                .decryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
-                .build();
-        try {
-            Jwe<Claims> decodedToken = jwtParser.parseEncryptedClaims(token);
-            HashMap<String, Object> data = new HashMap<>();
-            for(String key : decodedToken.getPayload().keySet()){
-                data.put(key, decodedToken.getPayload().get(key));
-            }
+    public HashMap<String, Object> decodeClaimsToMapWithToken(String token) {
+        HashMap<String, Object> data = decodeClaimsToMap(token);
+        if (data != null) {
             data.put("token", token);
-            return data;
-        } catch (ExpiredJwtException | MalformedJwtException | SecurityException | IllegalArgumentException e) {
-            log.error("Token not valid", e);
-            return null;
         }
+        return data;
     }
 
-    public synchronized boolean isValidToken(String token) {
-        JwtParser jwtParser = Jwts.parser()
-                .decryptWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
-                .build();
-        try {
-            Jwe<Claims> decodedToken = jwtParser.parseEncryptedClaims(token);
-            if (decodedToken != null) {
-                Long exp = decodedToken.getPayload().get("exp", Long.class);
-                if (exp > new Date().getTime()) {
-                    return true;
-                }
+    //NOTE never decrypts, null unless the token was already decoded: safe on the event loop
+    public Jwe<Claims> cachedClaims(String token) {
+        return token == null ? null : decodedTokens.getIfPresent(token);
+    }
+
+    public boolean isValidToken(String token) {
+        return isValid(decodeClaims(token));
+    }
+
+    public boolean isValid(Jwe<Claims> decodedToken) {
+        if (decodedToken != null) {
+            Long exp = decodedToken.getPayload().get("exp", Long.class);
+            if (exp > new Date().getTime()) {
+                return true;
             }
-        } catch (ExpiredJwtException | MalformedJwtException | SecurityException | IllegalArgumentException e) {
-            log.error("Token not valid", e);
         }
         return false;
     }
 
+    public Map<String, Object> getStats() {
+        CacheStats stats = decodedTokens.stats();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("hits", stats.hitCount());
+        res.put("misses", stats.missCount());
+        res.put("entries", decodedTokens.estimatedSize());
+        return res;
+    }
+
+    private static class UntilExpiration implements Expiry<String, Jwe<Claims>> {
+
+        @Override
+        public long expireAfterCreate(String token, Jwe<Claims> decoded, long currentTime) {
+            Date expiration = decoded.getPayload().getExpiration();
+            if (expiration == null) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Jwe<Claims> decoded, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String token, Jwe<Claims> decoded, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
 }
@@ -0,0 +1,109 @@
+package com.arlias.quarkus_crudify.util;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.panache.common.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class KeysetCursor {
+
+    public static final String AFTER_PARAM = "after";
+
+    private static final String PARAM_PREFIX = "cursorKey";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<String> values;
+
+    private KeysetCursor(List<String> values) {
+        this.values = values;
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return new KeysetCursor(List.of(mapper.readValue(json, String[].class)));
+        } catch (IllegalArgumentException | JsonProcessingException | NullPointerException e) {
+            throw CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Invalid cursor {}", cursor);
+        }
+    }
+
+    public static String encode(EntityMetadata metadata, SortInput sort, Object lastRow) {
+        List<String> keys = keysOf(sort);
+        String[] values = new String[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            values[i] = encodeValue(field(metadata, keys.get(i)).get(lastRow), keys.get(i));
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(values));
+        } catch (JsonProcessingException e) {
+            throw CustomException.get(CustomException.ErrorCode.INTERNAL, e);
+        }
+    }
+
+    public static List<String> keysOf(SortInput sort) {
+        List<String> keys = new ArrayList<>();
+        if (sort != null && sort.by != null) {
+            Arrays.stream(sort.by)
+                    .filter(k -> !k.equals("id") && !keys.contains(k))
+                    .forEach(keys::add);
+        }
+        keys.add("id");
+        return keys;
+    }
+
+    public static Sort sortOf(SortInput sort) {
+        return Sort.by(keysOf(sort).toArray(String[]::new)).direction(isDescending(sort) ? Sort.Direction.Descending : Sort.Direction.Ascending);
+    }
+
+    //NOTE (k0, k1, id) > (:c0, :c1, :cid) expanded as (k0 > :c0) or (k0 = :c0 and k1 > :c1) or (k0 = :c0 and k1 = :c1 and id > :cid)
+    public String appendPredicate(String query, EntityMetadata metadata, SortInput sort, Map<String, Object> params) {
+        List<String> keys = keysOf(sort);
+        if (keys.size() != values.size()) {
+            CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Cursor does not match sort {}", keys).boom();
+        }
+        String operator = isDescending(sort) ? " < :" : " > :";
+        StringJoiner predicate = new StringJoiner(" or ", " and (", ")");
+        for (int i = 0; i < keys.size(); i++) {
+            StringJoiner branch = new StringJoiner(" and ", "(", ")");
+            for (int j = 0; j < i; j++) {
+                branch.add(keys.get(j) + " = :" + PARAM_PREFIX + j);
+            }
+            branch.add(keys.get(i) + operator + PARAM_PREFIX + i);
+            predicate.add(branch.toString());
+            params.put(PARAM_PREFIX + i, field(metadata, keys.get(i)).toFilterValue(values.get(i)));
+        }
+        return query.concat(predicate.toString());
+    }
+
+    private static boolean isDescending(SortInput sort) {
+        return sort == null || sort.by == null || sort.by.length == 0 || sort.desc;
+    }
+
+    private static EntityMetadata.FieldMetadata field(EntityMetadata metadata, String key) {
+        EntityMetadata.FieldMetadata field = metadata.getEntityField(key);
+        if (field == null || !field.isReadable()) {
+            EntityMetadata.unknownField(metadata.getType(), key).boom();
+        }
+        return field;
+    }
+
+    private static String encodeValue(Object value, String key) {
+        if (value == null) {
+            throw CustomException.get(CustomException.ErrorCode.BAD_REQUEST, "Cannot page after a null {}, sort on a non nullable field", key);
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return String.valueOf(value);
+    }
+
+}
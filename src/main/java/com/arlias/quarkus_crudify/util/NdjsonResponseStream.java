@@ -0,0 +1,117 @@
+package com.arlias.quarkus_crudify.util;
+
+import com.arlias.quarkus_crudify.exception.CustomException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NdjsonResponseStream extends OutputStream {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final HttpServerResponse response;
+
+    private final Context context;
+
+    private final SequenceWriter writer;
+
+    private Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+
+    private volatile boolean closed;
+
+    private long rows;
+
+    public NdjsonResponseStream(HttpServerResponse response, Context context, ObjectMapper mapper) throws IOException {
+        this.response = response;
+        this.context = context;
+        context.runOnContext(v -> {
+            response.setChunked(true);
+            response.putHeader("Content-Type", CONTENT_TYPE);
+            response.closeHandler(c -> closed = true);
+        });
+        this.writer = mapper.writer().withRootValueSeparator("\n").writeValues(this);
+    }
+
+    public void writeRow(Object row) throws IOException {
+        writer.write(row);
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void end() throws IOException {
+        writer.flush();
+        if (rows > 0) {
+            chunk.appendString("\n");
+        }
+        Buffer last = chunk;
+        chunk = Buffer.buffer();
+        context.runOnContext(v -> {
+            if (!closed) {
+                response.end(last);
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) {
+        chunk.appendByte((byte) b);
+        if (chunk.length() >= CHUNK_SIZE) {
+            send();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        chunk.appendBytes(b, off, len);
+        if (chunk.length() >= CHUNK_SIZE) {
+            send();
+        }
+    }
+
+    private void send() {
+        if (closed) {
+            CustomException.get(CustomException.ErrorCode.UNVAILABLE, "Client closed the stream after {} rows", rows).boom();
+        }
+        Buffer data = chunk;
+        chunk = Buffer.buffer(CHUNK_SIZE);
+        CountDownLatch ready = new CountDownLatch(1);
+        context.runOnContext(v -> {
+            try {
+                if (!closed) {
+                    response.write(data);
+                }
+                if (!closed && response.writeQueueFull()) {
+                    response.drainHandler(d -> ready.countDown());
+                } else {
+                    ready.countDown();
+                }
+            } catch (RuntimeException e) {
+                closed = true;
+                ready.countDown();
+            }
+        });
+        try {
+            while (!ready.await(1, TimeUnit.SECONDS)) {
+                if (closed) {
+                    CustomException.get(CustomException.ErrorCode.UNVAILABLE, "Client closed the stream after {} rows", rows).boom();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CustomException.get(CustomException.ErrorCode.INTERNAL, e).boom();
+        }
+    }
+
+}
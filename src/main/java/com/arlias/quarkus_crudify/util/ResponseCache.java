@@ -0,0 +1,257 @@
+package com.arlias.quarkus_crudify.util;
+
+import com.arlias.quarkus_crudify.model.common.EntityMetadata;
+import com.arlias.quarkus_crudify.service.EntityVersions;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwe;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.vertx.http.runtime.security.QuarkusHttpUser;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.ws.rs.core.MediaType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+@Singleton
+public class ResponseCache {
+
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+
+    private static final String PENDING = "crudify.response-cache.pending";
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private static final String UNRESOLVED = "unresolved";
+
+    private static final Set<String> TOKEN_CLAIMS = Set.of("exp", "iat", "nbf", "jti");
+
+    @ConfigProperty(name = "crudify.response-cache.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "crudify.response-cache.ttl-seconds", defaultValue = "30")
+    long ttlSeconds;
+
+    @ConfigProperty(name = "crudify.response-cache.max-entries", defaultValue = "1000")
+    long maxEntries;
+
+    @Inject
+    JWTGenerator jwtGenerator;
+
+    private Cache<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        entries = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean tryAnswer(RoutingContext rc, Class<?> type) {
+        if (!EntityMetadata.of(type).isResponseCached()) {
+            return false;
+        }
+        String identity = identityOf(rc);
+        if (identity == null) {
+            bypassed.increment();
+            return false;
+        }
+        long version = EntityVersions.current(type);
+        if (identity.equals(UNRESOLVED)) {
+            misses.increment();
+            rc.put(PENDING, new Pending(keyOf(rc, ""), rc.request().getHeader("Auth"), version));
+            return false;
+        }
+        String key = keyOf(rc, identity);
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.version == version) {
+            rc.response().putHeader(ETAG, entry.etag);
+            if (entry.matches(rc.request().getHeader(IF_NONE_MATCH))) {
+                notModified.increment();
+                rc.response().setStatusCode(304).end();
+            } else {
+                hits.increment();
+                rc.response().putHeader("Content-Type", MediaType.APPLICATION_JSON).end(entry.body);
+            }
+            return true;
+        }
+        if (entry != null) {
+            stale.increment();
+            entries.invalidate(key);
+        }
+        misses.increment();
+        rc.put(PENDING, new Pending(key, null, version));
+        return false;
+    }
+
+    static void resolve(RoutingContext rc) {
+        Pending pending = rc == null ? null : rc.get(PENDING);
+        if (pending != null) {
+            pending.resolve();
+        }
+    }
+
+    //NOTE the version is the one read before the query ran, a write committed meanwhile leaves the entry stale
+    static void store(RoutingContext rc, String json) {
+        Pending pending = rc == null ? null : rc.get(PENDING);
+        if (pending == null || pending.key == null || rc.response().getStatusCode() != 200) {
+            return;
+        }
+        rc.response().putHeader(ETAG, pending.store(json));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("not-modified", notModified.sum());
+        stats.put("misses", misses.sum());
+        stats.put("stale", stale.sum());
+        stats.put("bypassed", bypassed.sum());
+        stats.put("entries", entries.estimatedSize());
+        return stats;
+    }
+
+    private String identityOf(RoutingContext rc) {
+        if (rc.user() instanceof QuarkusHttpUser) {
+            SecurityIdentity identity = ((QuarkusHttpUser) rc.user()).getSecurityIdentity();
+            if (identity != null && !identity.isAnonymous()) {
+                return "principal:" + identity.getPrincipal().getName() + ":" + new TreeSet<>(identity.getRoles());
+            }
+        }
+        HttpServerRequest request = rc.request();
+        if (request.getHeader("Authorization") != null || request.getHeader("Cookie") != null || hasClientCertificate(request)) {
+            return null;
+        }
+        String token = request.getHeader("Auth");
+        if (token == null) {
+            return ANONYMOUS;
+        }
+        Jwe<Claims> claims = jwtGenerator.cachedClaims(token);
+        return claims == null ? UNRESOLVED : tokenIdentity(claims);
+    }
+
+    private String tokenIdentity(Jwe<Claims> decoded) {
+        if (!jwtGenerator.isValid(decoded)) {
+            return null;
+        }
+        Map<String, Object> claims = new TreeMap<>(decoded.getPayload());
+        claims.keySet().removeAll(TOKEN_CLAIMS);
+        return "token:" + claims;
+    }
+
+    private static boolean hasClientCertificate(HttpServerRequest request) {
+        if (!request.isSSL()) {
+            return false;
+        }
+        try {
+            SSLSession session = request.sslSession();
+            return session != null && session.getPeerCertificates().length > 0;
+        } catch (SSLPeerUnverifiedException e) {
+            return false;
+        }
+    }
+
+    private static String keyOf(RoutingContext rc, String identity) {
+        StringBuilder key = new StringBuilder(rc.normalizedPath()).append('?');
+        MultiMap params = rc.queryParams();
+        for (String name : new TreeSet<>(params.names())) {
+            for (String value : params.getAll(name)) {
+                key.append(name).append('=').append(value).append('&');
+            }
+        }
+        return key.append('|').append(identity).toString();
+    }
+
+    private static String digest(String json) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(json.hashCode());
+        }
+    }
+
+    private class Pending {
+
+        private String key;
+
+        private final String token;
+
+        private final long version;
+
+        Pending(String key, String token, long version) {
+            this.key = key;
+            this.token = token;
+            this.version = version;
+        }
+
+        void resolve() {
+            if (token != null) {
+                Jwe<Claims> claims = jwtGenerator.decodeClaims(token);
+                String identity = claims == null ? null : tokenIdentity(claims);
+                key = identity == null ? null : key + identity;
+            }
+        }
+
+        String store(String json) {
+            Entry entry = new Entry(version, json);
+            entries.put(key, entry);
+            return entry.etag;
+        }
+    }
+
+    private static class Entry {
+
+        private final long version;
+
+        private final String etag;
+
+        private final Buffer body;
+
+        Entry(long version, String json) {
+            this.version = version;
+            this.etag = "\"" + version + "-" + digest(json) + "\"";
+            this.body = Buffer.buffer(json);
+        }
+
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
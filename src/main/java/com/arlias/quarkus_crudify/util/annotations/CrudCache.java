@@ -0,0 +1,17 @@
+package com.arlias.quarkus_crudify.util.annotations;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Target({ElementType.TYPE})
+@Retention(RUNTIME)
+public @interface CrudCache {
+
+    long ttlSeconds() default 60;
+    long maxSize() default 1000;
+
+}
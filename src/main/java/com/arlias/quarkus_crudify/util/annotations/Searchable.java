@@ -0,0 +1,16 @@
+package com.arlias.quarkus_crudify.util.annotations;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Target({ElementType.FIELD})
+@Retention(RUNTIME)
+public @interface Searchable {
+
+    int weight() default 1;
+
+}